@@ -0,0 +1,91 @@
+package com.example.asanawatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Main.runCheck 1 回分（セクション解決・ページ取得・解析・状態更新・履歴追記）をプロセス内の偽 Asana に対して実行
+// ネットワークの遅延は含まないため、クライアント側の CPU とアロケーションの比較に使う
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CheckCycleBenchmark {
+    private static final String PROJECT_GID = "1200000000001";
+    private static final int SECTIONS = 5;
+
+    @Param({Config.Watch.MODE_SCAN, Config.Watch.MODE_PROJECT})
+    public String countMode;
+
+    @Param({"100", "2000"})
+    public int tasksPerSection;
+
+    private FakeAsanaServer server;
+    private PrintStream originalOut;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        List<FakeAsanaServer.Section> sections = new ArrayList<>();
+        for (int i = 0; i < SECTIONS; i++) {
+            sections.add(new FakeAsanaServer.Section(Long.toString(1_200_000_000_100L + i), "Section " + i, tasksPerSection, 3));
+        }
+        server = new FakeAsanaServer(Map.of(PROJECT_GID, sections));
+
+        Path dir = Files.createTempDirectory("asana-watcher-bench");
+        Config cfg = new Config();
+        cfg.personalAccessToken = "bench";
+        cfg.apiBaseUrl = server.apiBase();
+        // ベンチマーク中はレート制限で待たない・通知しない
+        cfg.requestsPerMinute = 1_000_000;
+        cfg.maxConcurrentRequests = 64;
+        cfg.notificationBackends = List.of(LogNotificationBackend.NAME);
+        cfg.historyMaxRecords = 4096;
+        for (FakeAsanaServer.Section s : sections) {
+            Config.Watch w = new Config.Watch();
+            w.projectGid = PROJECT_GID;
+            w.targetSectionName = s.name();
+            w.threshold = Integer.MAX_VALUE;
+            w.countMode = countMode;
+            cfg.watches.add(w);
+        }
+        Config.save(cfg, dir.resolve("config.json"));
+
+        // チェックごとのログ行で計測を乱さないよう標準出力を捨てる
+        originalOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        Main.initCore(dir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(originalOut);
+        server.close();
+    }
+
+    @Benchmark
+    public void runCheck() {
+        Main.runCheck(true);
+    }
+}
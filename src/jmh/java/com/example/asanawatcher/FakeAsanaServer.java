@@ -0,0 +1,350 @@
+package com.example.asanawatcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ベンチマーク・負荷試験用のプロセス内 Asana API（読み取り系のみ。PAT は検証しない）。
+// - GET /projects/<gid>/sections
+// - GET /sections/<gid>/tasks?opt_fields=completed&limit=&offset=
+//   opt_fields に assignee を含む場合は担当者（7 件に 1 件は未割り当て）と、優先度（列挙型、5 件に 1 件は未設定）・
+//   テキストのカスタムフィールドも返す（内訳の集計用）。created_at を含む場合は作成日時（タスク i は TASK_EPOCH + i 分）と
+//   最終更新日時（作成の (i % 72) 時間後）も返す（滞留時間の集計用）
+// - GET /projects/<gid>/tasks?opt_fields=completed,memberships.section.gid&limit=&offset=
+// ページは next_page.uri で辿る本物と同じ形（limit は本物と同じく 1〜100）。応答本文は URL ごとに 1 回だけ組み立ててキャッシュする
+// Options でページごとの遅延、429/5xx の混入、最終ページの next_page の形、特定の PAT だけへの 429/401 を変えられる
+final class FakeAsanaServer implements AutoCloseable {
+    // 最終ページの next_page の返し方
+    enum NextPageMode {
+        NULL_ON_LAST,        // "next_page": null（本物の既定）
+        OMITTED_ON_LAST,     // next_page フィールド自体が無い
+        TRAILING_EMPTY_PAGE  // 最終ページの後に data が空のページが 1 つ続く
+    }
+
+    static final class Options {
+        // 応答前に待つ時間（ミリ秒。全リクエスト共通）
+        int pageLatencyMillis = 0;
+        // 429 / 503 を返す割合（0〜1）。エラー応答はキャッシュしない
+        double rate429 = 0;
+        double rate5xx = 0;
+        // 429 の Retry-After（秒）
+        int retryAfterSeconds = 1;
+        NextPageMode nextPage = NextPageMode.NULL_ON_LAST;
+        // この PAT のリクエストには常に 429（Retry-After 付き）/ 401 を返す（認証情報ごとの分離の確認用。null なら無効）
+        String throttledToken = null;
+        String unauthorizedToken = null;
+        // true の間はすべての接続をレスポンス無しで切る（Asana に接続できない状態。遮断器の確認用。実行中に切り替え可）
+        volatile boolean unreachable = false;
+    }
+
+    // completedEvery 件ごとに 1 件を完了済みにする（0 なら全件未完了）
+    record Section(String gid, String name, int tasks, int completedEvery) {
+        boolean isCompleted(int i) {
+            return completedEvery > 0 && i % completedEvery == 0;
+        }
+    }
+
+    // 内訳用のカスタムフィールド（優先度 P1〜P4）と担当者
+    static final String PRIORITY_FIELD_GID = "1200000000900";
+    static final int PRIORITY_OPTIONS = 4;
+    static final int ASSIGNEES = 6;
+    // タスク 0 の作成日時（エポック秒、2024-01-01T00:00:00Z）
+    static final long TASK_EPOCH = 1_704_067_200L;
+
+    private static final int DEFAULT_LIMIT = 100;
+    private static final int MAX_LIMIT = 100;
+
+    static {
+        // JDK の HttpServer はヘッダと本文を別々に送るため、Nagle と遅延 ACK で 1 リクエストごとに約 40ms 待たされる
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final Options options;
+    private final Map<String, List<Section>> projects;
+    private final Map<String, Section> sections = new LinkedHashMap<>();
+    private final Map<String, byte[]> responses = new ConcurrentHashMap<>();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injected429 = new AtomicLong();
+    private final AtomicLong injected5xx = new AtomicLong();
+    private final String apiBase;
+
+    FakeAsanaServer(Map<String, List<Section>> projects) throws IOException {
+        this(projects, new Options());
+    }
+
+    FakeAsanaServer(Map<String, List<Section>> projects, Options options) throws IOException {
+        this.options = options;
+        this.projects = projects;
+        for (List<Section> list : projects.values()) {
+            for (Section s : list) sections.put(s.gid(), s);
+        }
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.start();
+        this.apiBase = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    // Config.apiBaseUrl に設定する URL
+    String apiBase() {
+        return apiBase;
+    }
+
+    long requestCount() {
+        return requests.get();
+    }
+
+    long injected429Count() {
+        return injected429.get();
+    }
+
+    long injected5xxCount() {
+        return injected5xx.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            requests.incrementAndGet();
+            if (options.unreachable) {
+                // レスポンスを返さずに閉じると、HttpServer は接続を切る
+                return;
+            }
+            if (options.pageLatencyMillis > 0) {
+                try {
+                    Thread.sleep(options.pageLatencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            String auth = ex.getRequestHeaders().getFirst("Authorization");
+            if (options.unauthorizedToken != null && ("Bearer " + options.unauthorizedToken).equals(auth)) {
+                sendError(ex, 401, "Not Authorized");
+                return;
+            }
+            if (options.throttledToken != null && ("Bearer " + options.throttledToken).equals(auth)) {
+                injected429.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", Integer.toString(options.retryAfterSeconds));
+                sendError(ex, 429, "Too Many Requests");
+                return;
+            }
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < options.rate429) {
+                injected429.incrementAndGet();
+                ex.getResponseHeaders().set("Retry-After", Integer.toString(options.retryAfterSeconds));
+                sendError(ex, 429, "Too Many Requests");
+                return;
+            }
+            if (roll < options.rate429 + options.rate5xx) {
+                injected5xx.incrementAndGet();
+                sendError(ex, 503, "Service Unavailable");
+                return;
+            }
+            String uri = ex.getRequestURI().toString();
+            int limit = intParam(ex.getRequestURI().getRawQuery(), "limit", DEFAULT_LIMIT);
+            if (limit < 1 || limit > MAX_LIMIT) {
+                sendError(ex, 400, "limit: Must be between 1 and " + MAX_LIMIT);
+                return;
+            }
+            byte[] body = responses.computeIfAbsent(uri, this::render);
+            if (body.length == 0) {
+                sendError(ex, 404, "Unknown object");
+                return;
+            }
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    // Asana と同じ形のエラー本文
+    private static void sendError(HttpExchange ex, int status, String message) throws IOException {
+        byte[] body = ("{\"errors\":[{\"message\":\"" + message + "\"}]}").getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    // URL に対応する応答本文（該当なしは空配列 = 404）
+    private byte[] render(String uri) {
+        String path = uri;
+        String query = "";
+        int q = uri.indexOf('?');
+        if (q >= 0) {
+            path = uri.substring(0, q);
+            query = uri.substring(q + 1);
+        }
+        String[] parts = path.split("/");
+        // ["", "projects", gid, "sections"] など
+        if (parts.length != 4) return new byte[0];
+        int limit = intParam(query, "limit", DEFAULT_LIMIT);
+        int offset = intParam(query, "offset", 0);
+        if ("projects".equals(parts[1]) && "sections".equals(parts[3])) {
+            List<Section> list = projects.get(parts[2]);
+            return list == null ? new byte[0] : sectionList(list);
+        }
+        if ("sections".equals(parts[1]) && "tasks".equals(parts[3])) {
+            Section s = sections.get(parts[2]);
+            if (s == null) return new byte[0];
+            return sectionTasksPage(s, offset, limit, next(path, query, offset, limit, s.tasks()), options.nextPage,
+                    query.contains("assignee"), query.contains("created_at"));
+        }
+        if ("projects".equals(parts[1]) && "tasks".equals(parts[3])) {
+            List<Section> list = projects.get(parts[2]);
+            if (list == null) return new byte[0];
+            int total = list.stream().mapToInt(Section::tasks).sum();
+            return projectTasksPage(list, offset, limit, next(path, query, offset, limit, total), options.nextPage);
+        }
+        return new byte[0];
+    }
+
+    // 次のページの URI（最終ページなら null。TRAILING_EMPTY_PAGE では末尾の空ページまで続ける）
+    private String next(String path, String query, int offset, int limit, int total) {
+        boolean more = options.nextPage == NextPageMode.TRAILING_EMPTY_PAGE ? offset < total : offset + limit < total;
+        return more ? nextUri(path, query, offset + limit) : null;
+    }
+
+    private String nextUri(String path, String query, int offset) {
+        StringBuilder sb = new StringBuilder(apiBase).append(path).append('?');
+        for (String kv : query.split("&")) {
+            if (!kv.isEmpty() && !kv.startsWith("offset=")) sb.append(kv).append('&');
+        }
+        return sb.append("offset=").append(offset).toString();
+    }
+
+    private static int intParam(String query, String name, int def) {
+        if (query == null) return def;
+        for (String kv : query.split("&")) {
+            if (kv.startsWith(name + "=")) {
+                try {
+                    return Integer.parseInt(kv.substring(name.length() + 1));
+                } catch (NumberFormatException e) {
+                    return def;
+                }
+            }
+        }
+        return def;
+    }
+
+    static byte[] sectionList(List<Section> list) {
+        StringBuilder sb = new StringBuilder("{\"data\":[");
+        for (int i = 0; i < list.size(); i++) {
+            Section s = list.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"gid\":\"").append(s.gid()).append("\",\"name\":\"").append(s.name())
+                    .append("\",\"resource_type\":\"section\"}");
+        }
+        return sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // GET /sections/<gid>/tasks の 1 ページ分
+    static byte[] sectionTasksPage(Section s, int offset, int limit, String nextUri, NextPageMode mode, boolean breakdown,
+                                   boolean dates) {
+        StringBuilder sb = new StringBuilder(((breakdown ? 400 : 64) + (dates ? 80 : 0)) * limit).append("{\"data\":[");
+        int end = Math.min(s.tasks(), offset + limit);
+        for (int i = offset; i < end; i++) {
+            if (i > offset) sb.append(',');
+            sb.append("{\"gid\":\"").append(taskGid(s, i)).append("\",\"completed\":").append(s.isCompleted(i));
+            if (breakdown) appendBreakdownFields(sb, i);
+            if (dates) {
+                long created = createdAt(i);
+                sb.append(",\"created_at\":\"").append(Instant.ofEpochMilli(created * 1000 + 147))
+                        .append("\",\"modified_at\":\"").append(Instant.ofEpochMilli((created + 3_600L * (i % 72)) * 1000 + 147))
+                        .append('"');
+            }
+            sb.append(",\"resource_type\":\"task\"}");
+        }
+        return appendNextPage(sb.append(']'), nextUri, mode);
+    }
+
+    private static void appendBreakdownFields(StringBuilder sb, int i) {
+        if (i % 7 == 0) {
+            sb.append(",\"assignee\":null");
+        } else {
+            int a = i % ASSIGNEES;
+            sb.append(",\"assignee\":{\"gid\":\"").append(1_200_000_000_800L + a).append("\",\"name\":\"User ").append(a)
+                    .append("\",\"resource_type\":\"user\"}");
+        }
+        sb.append(",\"custom_fields\":[{\"gid\":\"").append(PRIORITY_FIELD_GID).append("\",\"name\":\"Priority\",");
+        if (i % 5 == 0) {
+            sb.append("\"enum_value\":null");
+        } else {
+            int p = i % PRIORITY_OPTIONS;
+            sb.append("\"enum_value\":{\"gid\":\"").append(priorityOptionGid(p)).append("\",\"name\":\"P").append(p + 1)
+                    .append("\",\"resource_type\":\"enum_option\"}");
+        }
+        sb.append(",\"resource_type\":\"custom_field\"},{\"gid\":\"1200000000950\",\"name\":\"Note\",\"enum_value\":null,")
+                .append("\"resource_type\":\"custom_field\"}]");
+    }
+
+    // タスク i の作成日時（エポック秒）
+    static long createdAt(int i) {
+        return TASK_EPOCH + 60L * i;
+    }
+
+    static long priorityOptionGid(int p) {
+        return 1_200_000_000_901L + p;
+    }
+
+    // GET /projects/<gid>/tasks の 1 ページ分（セクションを順に並べた全タスクの offset〜offset+limit）
+    static byte[] projectTasksPage(List<Section> list, int offset, int limit, String nextUri, NextPageMode mode) {
+        StringBuilder sb = new StringBuilder(128 * limit).append("{\"data\":[");
+        int skip = offset;
+        int written = 0;
+        for (Section s : list) {
+            // offset より前のセクションはタスクを列挙せずに飛ばす（10 万件規模でもページごとの組み立てを軽くする）
+            if (skip >= s.tasks()) {
+                skip -= s.tasks();
+                continue;
+            }
+            for (int i = skip; i < s.tasks() && written < limit; i++) {
+                if (written++ > 0) sb.append(',');
+                sb.append("{\"gid\":\"").append(taskGid(s, i)).append("\",\"completed\":").append(s.isCompleted(i))
+                        .append(",\"memberships\":[{\"section\":{\"gid\":\"").append(s.gid())
+                        .append("\",\"resource_type\":\"section\"}}],\"resource_type\":\"task\"}");
+            }
+            skip = 0;
+            if (written == limit) break;
+        }
+        return appendNextPage(sb.append(']'), nextUri, mode);
+    }
+
+    private static byte[] appendNextPage(StringBuilder sb, String nextUri, NextPageMode mode) {
+        if (nextUri == null && mode == NextPageMode.OMITTED_ON_LAST) {
+            sb.append('}');
+        } else if (nextUri == null) {
+            sb.append(",\"next_page\":null}");
+        } else {
+            sb.append(",\"next_page\":{\"offset\":\"").append(nextUri.substring(nextUri.lastIndexOf('=') + 1))
+                    .append("\",\"path\":\"\",\"uri\":\"").append(nextUri).append("\"}}");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String taskGid(Section s, int i) {
+        return Long.toString(Long.parseLong(s.gid()) * 1_000_000L + i);
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.asanawatcher;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// FakeAsanaServer に対する負荷試験（本物の PAT・ネットワーク不要）。
+// 1) AsanaClient で全セクションを並列に数える（scan）/ プロジェクトを一括集計する（project）を rounds 回
+// 2) Main.runCheck を rounds 回（設定・状態・履歴・通知キューを含むチェック処理全体）
+// 件数が期待値と合わない、または --maxP95Ms を超えた場合は終了コード 1
+// --noisyToken=429|401 のときは、常に 429 / 401 を受ける別の認証情報（noisy）の監視を同じ数だけ加え、
+// 正常な認証情報の監視のチェック時間が影響を受けないことを確認する（監視ごとの平均チェック時間を表示）
+//
+// 例: gradle loadTest -PloadArgs="--sections=10 --tasks=100000 --latencyMs=20 --rate5xx=0.01"
+public final class LoadHarness {
+    private static final String PROJECT_GID = "1200000000001";
+    // noisy の認証情報で監視するプロジェクト（同じセクションを別プロジェクトとして見せる）
+    private static final String NOISY_PROJECT_GID = "1200000000002";
+    private static final String NOISY_CREDENTIAL = "noisy";
+    // --mode=breakdown: 担当者・優先度の内訳付きで数える（runCheck では scan + breakdownFields）
+    private static final String MODE_BREAKDOWN = "breakdown";
+    // --mode=aging: 作成・更新日時を取得して滞留時間の索引を更新しながら数える（runCheck では scan + maxTaskAgeHours）
+    private static final String MODE_AGING = "aging";
+
+    private LoadHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = parseArgs(args);
+        int sectionCount = intOpt(opt, "sections", 5);
+        int tasks = intOpt(opt, "tasks", 10_000);
+        int completedEvery = intOpt(opt, "completedEvery", 3);
+        int rounds = intOpt(opt, "rounds", 5);
+        String mode = opt.getOrDefault("mode", Config.Watch.MODE_SCAN);
+        int rpm = intOpt(opt, "rpm", 100_000);
+        int concurrency = intOpt(opt, "concurrency", Config.DEFAULT_MAX_CONCURRENT_REQUESTS);
+        long maxP95Millis = intOpt(opt, "maxP95Ms", 0);
+        FakeAsanaServer.Options options = new FakeAsanaServer.Options();
+        options.pageLatencyMillis = intOpt(opt, "latencyMs", 0);
+        options.rate429 = Double.parseDouble(opt.getOrDefault("rate429", "0"));
+        options.rate5xx = Double.parseDouble(opt.getOrDefault("rate5xx", "0"));
+        options.retryAfterSeconds = intOpt(opt, "retryAfter", 1);
+        options.nextPage = FakeAsanaServer.NextPageMode.valueOf(opt.getOrDefault("nextPage", "NULL_ON_LAST"));
+        String noisy = opt.get("noisyToken");
+        if ("429".equals(noisy)) options.throttledToken = NOISY_CREDENTIAL;
+        else if ("401".equals(noisy)) options.unauthorizedToken = NOISY_CREDENTIAL;
+        else if (noisy != null) throw new IllegalArgumentException("--noisyToken は 429 か 401 です: " + noisy);
+
+        List<FakeAsanaServer.Section> sections = new ArrayList<>();
+        for (int i = 0; i < sectionCount; i++) {
+            sections.add(new FakeAsanaServer.Section(Long.toString(1_200_000_000_100L + i), "Section " + i, tasks, completedEvery));
+        }
+        int expected = tasks - (completedEvery > 0 ? (tasks + completedEvery - 1) / completedEvery : 0);
+        PrintStream out = System.out;
+        out.printf("sections=%d tasks/section=%d mode=%s rounds=%d latency=%dms 429=%.3f 5xx=%.3f nextPage=%s rpm=%d concurrency=%d%n",
+                sectionCount, tasks, mode, rounds, options.pageLatencyMillis, options.rate429, options.rate5xx,
+                options.nextPage, rpm, concurrency);
+
+        boolean ok = true;
+        try (FakeAsanaServer server = new FakeAsanaServer(Map.of(PROJECT_GID, sections, NOISY_PROJECT_GID, sections), options)) {
+            // 1) AsanaClient 単体
+            long[] clientNanos = new long[rounds];
+            long requestsBefore = server.requestCount();
+            // aging のときセクションごとの索引（ラウンドをまたいで使い回し、2 回目以降は更新のみ）
+            Map<String, TaskAgeIndex> ages = new HashMap<>();
+            for (FakeAsanaServer.Section s : sections) ages.put(s.name(), new TaskAgeIndex());
+            try (AsanaClient client = new AsanaClient("load-test", new RequestScheduler(rpm, concurrency), server.apiBase())) {
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    int[] counts = countAll(client, mode, sections, ages);
+                    clientNanos[r] = System.nanoTime() - start;
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] != expected) {
+                            out.printf("MISMATCH round %d %s: %d (expected %d)%n", r, sections.get(i).name(), counts[i], expected);
+                            ok = false;
+                        }
+                    }
+                }
+            }
+            long clientRequests = server.requestCount() - requestsBefore;
+            report(out, "client", clientNanos, clientRequests, (long) sectionCount * tasks * rounds);
+            if (MODE_AGING.equals(mode)) {
+                out.printf("age index: %d tasks/section, task-age.bin %d bytes%n",
+                        ages.get(sections.get(0).name()).size(), TaskAgeIndex.toBytes(ages).length);
+            }
+
+            // 2) チェック処理全体（標準出力へのログは捨てる）
+            Path dir = Files.createTempDirectory("asana-watcher-load");
+            Config cfg = new Config();
+            cfg.personalAccessToken = "load-test";
+            cfg.apiBaseUrl = server.apiBase();
+            cfg.requestsPerMinute = rpm;
+            cfg.maxConcurrentRequests = concurrency;
+            cfg.notificationBackends = List.of(LogNotificationBackend.NAME);
+            for (FakeAsanaServer.Section s : sections) {
+                Config.Watch w = new Config.Watch();
+                w.projectGid = PROJECT_GID;
+                w.targetSectionName = s.name();
+                w.threshold = Integer.MAX_VALUE;
+                if (MODE_BREAKDOWN.equals(mode)) {
+                    w.breakdownFields = List.of(FakeAsanaServer.PRIORITY_FIELD_GID);
+                } else if (MODE_AGING.equals(mode)) {
+                    w.maxTaskAgeHours = Integer.MAX_VALUE;
+                } else {
+                    w.countMode = mode;
+                }
+                cfg.watches.add(w);
+                if (noisy != null) {
+                    Config.Watch n = new Config.Watch();
+                    n.name = NOISY_CREDENTIAL + " " + s.name();
+                    n.projectGid = NOISY_PROJECT_GID;
+                    n.targetSectionName = s.name();
+                    n.threshold = Integer.MAX_VALUE;
+                    n.credential = NOISY_CREDENTIAL;
+                    cfg.watches.add(n);
+                }
+            }
+            if (noisy != null) {
+                Config.Credential c = new Config.Credential();
+                c.name = NOISY_CREDENTIAL;
+                c.personalAccessToken = NOISY_CREDENTIAL;
+                cfg.credentials.add(c);
+            }
+            Config.save(cfg, dir.resolve("config.json"));
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            long[] checkNanos = new long[rounds];
+            requestsBefore = server.requestCount();
+            try {
+                Main.initCore(dir);
+                for (int r = 0; r < rounds; r++) {
+                    long start = System.nanoTime();
+                    Main.runCheck(true);
+                    checkNanos[r] = System.nanoTime() - start;
+                }
+            } finally {
+                System.setOut(out);
+            }
+            report(out, "runCheck", checkNanos, server.requestCount() - requestsBefore, (long) sectionCount * tasks * rounds);
+            Metrics.render().lines()
+                    .filter(l -> l.startsWith("asana_watcher_incomplete_tasks{"))
+                    .filter(l -> !l.endsWith(" " + expected))
+                    .forEach(l -> out.println("MISMATCH runCheck " + l));
+            if (Metrics.render().lines().anyMatch(l -> l.startsWith("asana_watcher_incomplete_tasks{") && !l.endsWith(" " + expected))) {
+                ok = false;
+            }
+            if (noisy != null) {
+                out.printf("check avg: default=%dms noisy=%dms%n", avgCheckMillis(false), avgCheckMillis(true));
+                Metrics.render().lines().filter(l -> l.startsWith("asana_watcher_credential_requests_total{")).forEach(out::println);
+            }
+            out.printf("injected 429=%d 5xx=%d%n", server.injected429Count(), server.injected5xxCount());
+            Metrics.render().lines()
+                    .filter(l -> l.startsWith("asana_watcher_responses_total") || l.startsWith("asana_watcher_retries_total")
+                            || l.startsWith("asana_watcher_request_errors_total") || l.startsWith("asana_watcher_check_failures_total")
+                            || l.startsWith("asana_watcher_response_bytes_total"))
+                    .forEach(out::println);
+            if (maxP95Millis > 0 && TimeUnit.NANOSECONDS.toMillis(percentile(checkNanos, 0.95)) > maxP95Millis) {
+                out.println("FAIL runCheck p95 exceeds " + maxP95Millis + "ms");
+                ok = false;
+            }
+        }
+        out.println(ok ? "OK" : "FAILED");
+        System.exit(ok ? 0 : 1);
+    }
+
+    // 全セクションの未完了数（scan はセクションごとに仮想スレッドで並列、project は 1 回の走査）
+    // breakdown は scan と同じ並列で担当者・優先度の内訳を集計し、内訳の合計が総数と合わなければ -1 を返す
+    // aging は scan と同じ並列で滞留時間の索引を更新し、索引の件数か最も古い作成日時が合わなければ -1 を返す
+    private static int[] countAll(AsanaClient client, String mode, List<FakeAsanaServer.Section> sections,
+                                  Map<String, TaskAgeIndex> ages) throws Exception {
+        int[] counts = new int[sections.size()];
+        if (Config.Watch.MODE_PROJECT.equals(mode)) {
+            LongIntHashMap tally = client.countIncompleteTasksBySection(PROJECT_GID);
+            for (int i = 0; i < counts.length; i++) counts[i] = tally.get(Long.parseLong(sections.get(i).gid()));
+            return counts;
+        }
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Optional<Integer>>> futures = new ArrayList<>();
+            for (FakeAsanaServer.Section s : sections) {
+                TaskAgeIndex index = ages.get(s.name());
+                AsanaClient.SectionCall<Integer> counter = switch (mode) {
+                    case MODE_BREAKDOWN -> sectionGid -> checkedTotal(
+                            client.breakdownIncompleteTasksInSection(sectionGid, List.of(FakeAsanaServer.PRIORITY_FIELD_GID)));
+                    case MODE_AGING -> sectionGid -> checkedAges(s, client.countIncompleteTasksInSection(sectionGid, index), index);
+                    default -> client::countIncompleteTasksInSection;
+                };
+                futures.add(exec.submit(() -> client.withSection(PROJECT_GID, s.name(), counter)));
+            }
+            for (int i = 0; i < counts.length; i++) counts[i] = futures.get(i).get().orElse(-1);
+        }
+        return counts;
+    }
+
+    private static int checkedTotal(SectionBreakdown b) {
+        int byAssignee = b.count(SectionBreakdown.ASSIGNEE, SectionBreakdown.NONE_VALUE);
+        for (int a = 0; a < FakeAsanaServer.ASSIGNEES; a++) byAssignee += b.count(SectionBreakdown.ASSIGNEE, "User " + a);
+        int byPriority = b.count(FakeAsanaServer.PRIORITY_FIELD_GID, SectionBreakdown.NONE_VALUE);
+        for (int p = 0; p < FakeAsanaServer.PRIORITY_OPTIONS; p++) byPriority += b.count(FakeAsanaServer.PRIORITY_FIELD_GID, "P" + (p + 1));
+        return byAssignee == b.total() && byPriority == b.total() ? b.total() : -1;
+    }
+
+    private static int checkedAges(FakeAsanaServer.Section s, int count, TaskAgeIndex index) {
+        int first = 0;
+        while (first < s.tasks() && s.isCompleted(first)) first++;
+        boolean ok = index.size() == count && (count == 0 || index.oldestCreated() == FakeAsanaServer.createdAt(first));
+        return ok ? count : -1;
+    }
+
+    // 監視ごとのチェック時間のヒストグラムから、noisy の監視（またはそれ以外）の平均（ミリ秒）
+    private static long avgCheckMillis(boolean noisy) {
+        double sum = 0;
+        long count = 0;
+        String watchPrefix = "{watch=\"" + NOISY_CREDENTIAL + " ";
+        for (String l : Metrics.render().lines().toList()) {
+            boolean isSum = l.startsWith("asana_watcher_check_duration_seconds_sum{");
+            boolean isCount = l.startsWith("asana_watcher_check_duration_seconds_count{");
+            if ((!isSum && !isCount) || l.contains(watchPrefix) != noisy) continue;
+            String v = l.substring(l.lastIndexOf(' ') + 1);
+            if (isSum) sum += Double.parseDouble(v);
+            else count += Long.parseLong(v);
+        }
+        return count == 0 ? 0 : (long) (sum * 1000 / count);
+    }
+
+    private static void report(PrintStream out, String name, long[] nanos, long requests, long tasks) {
+        long total = Arrays.stream(nanos).sum();
+        double seconds = total / 1e9;
+        out.printf("%-8s rounds=%d p50=%dms p95=%dms max=%dms requests=%d (%.0f req/s) tasks=%.0f/s%n",
+                name, nanos.length,
+                TimeUnit.NANOSECONDS.toMillis(percentile(nanos, 0.50)),
+                TimeUnit.NANOSECONDS.toMillis(percentile(nanos, 0.95)),
+                TimeUnit.NANOSECONDS.toMillis(Arrays.stream(nanos).max().orElse(0)),
+                requests, requests / seconds, tasks / seconds);
+    }
+
+    private static long percentile(long[] values, double p) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--") || !a.contains("=")) throw new IllegalArgumentException("--name=value で指定してください: " + a);
+            int eq = a.indexOf('=');
+            opt.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        return opt;
+    }
+
+    private static int intOpt(Map<String, String> opt, String name, int def) {
+        String v = opt.get(name);
+        return v == null ? def : Integer.parseInt(v);
+    }
+}
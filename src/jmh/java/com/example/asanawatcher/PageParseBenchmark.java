@@ -0,0 +1,99 @@
+package com.example.asanawatcher;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Asana のタスク一覧 1 ページ（100 件、実際の応答を元にした JSON）の解析
+// readTree は変更前のツリーモデルによる解析との比較用
+// sectionPageBreakdown は担当者・カスタムフィールド付きのページ（FakeAsanaServer と同じ形）の内訳集計
+// sectionPageAges は作成・更新日時付きのページによる滞留時間の索引の更新（2 回目以降の走査と同じく、既存タスクの世代の書き換えと削除の確認）
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PageParseBenchmark {
+    private final JsonFactory factory = new JsonFactory();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Set<String> gids = new HashSet<>();
+    private final LongIntHashMap counts = new LongIntHashMap();
+    private byte[] sectionPage;
+    private byte[] projectPage;
+    private byte[] breakdownPage;
+    private byte[] datedPage;
+    private final TaskAgeIndex ages = new TaskAgeIndex();
+
+    @Setup
+    public void setup() throws IOException {
+        sectionPage = resource("section-tasks-page.json");
+        projectPage = resource("project-tasks-page.json");
+        breakdownPage = FakeAsanaServer.sectionTasksPage(new FakeAsanaServer.Section("1200000000100", "Doing", 100, 3),
+                0, 100, "https://app.asana.com/api/1.0/sections/1200000000100/tasks?offset=100", FakeAsanaServer.NextPageMode.NULL_ON_LAST, true, false);
+        datedPage = FakeAsanaServer.sectionTasksPage(new FakeAsanaServer.Section("1200000000100", "Doing", 100, 3),
+                0, 100, null, FakeAsanaServer.NextPageMode.NULL_ON_LAST, false, true);
+    }
+
+    @Benchmark
+    public AsanaClient.TaskPage sectionPageCount() throws IOException {
+        return AsanaClient.parseTaskPage(factory.createParser(sectionPage), null);
+    }
+
+    @Benchmark
+    public AsanaClient.TaskPage sectionPageCollectGids() throws IOException {
+        gids.clear();
+        return AsanaClient.parseTaskPage(factory.createParser(sectionPage), gids::add);
+    }
+
+    @Benchmark
+    public int projectPageTally() throws IOException {
+        counts.clear();
+        AsanaClient.parseProjectTaskPage(factory.createParser(projectPage), counts);
+        return counts.size();
+    }
+
+    @Benchmark
+    public SectionBreakdown sectionPageBreakdown() throws IOException {
+        SectionBreakdown breakdown = new SectionBreakdown(List.of(FakeAsanaServer.PRIORITY_FIELD_GID));
+        AsanaClient.parseBreakdownPage(factory.createParser(breakdownPage), breakdown);
+        return breakdown;
+    }
+
+    @Benchmark
+    public int sectionPageAges() throws IOException {
+        ages.beginPoll(FakeAsanaServer.TASK_EPOCH + 86_400L * 7);
+        AsanaClient.parseTaskPage(factory.createParser(datedPage), null, ages);
+        ages.endPoll();
+        return ages.size();
+    }
+
+    @Benchmark
+    public void sectionPageReadTree(Blackhole bh) throws IOException {
+        bh.consume(mapper.readTree(sectionPage));
+    }
+
+    static byte[] resource(String name) throws IOException {
+        try (InputStream in = PageParseBenchmark.class.getResourceAsStream("/" + name)) {
+            if (in == null) throw new IOException("resource not found: " + name);
+            return in.readAllBytes();
+        }
+    }
+}
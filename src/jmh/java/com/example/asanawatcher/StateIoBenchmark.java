@@ -0,0 +1,120 @@
+package com.example.asanawatcher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// config.json / state.json / event-tasks.bin の読み書き（監視数と、events モードの監視ごとの未完了タスク集合の大きさを変える）
+// JMH の @State はこのパッケージの State クラスと名前が衝突するため完全修飾名で書く
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+public class StateIoBenchmark {
+    @Param({"1", "20"})
+    public int watches;
+
+    @Param({"0", "1000"})
+    public int trackedTasks;
+
+    private Path dir;
+    private Path configPath;
+    private Path statePath;
+    private State state;
+    private Path eventTasksPath;
+    private final Map<String, EventTaskIndex> eventTasks = new LinkedHashMap<>();
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("asana-watcher-bench");
+        configPath = dir.resolve("config.json");
+        statePath = dir.resolve("state.json");
+        eventTasksPath = dir.resolve("event-tasks.bin");
+
+        Config cfg = new Config();
+        cfg.personalAccessToken = "bench";
+        for (int i = 0; i < watches; i++) {
+            Config.Watch w = new Config.Watch();
+            w.name = "watch-" + i;
+            w.projectGid = Long.toString(1_200_000_000_000L + i);
+            w.targetSectionName = "Section " + i;
+            cfg.watches.add(w);
+        }
+        Config.save(cfg, configPath);
+
+        state = new State();
+        for (Config.Watch w : cfg.watches) {
+            State.WatchState ws = state.watch(w.key());
+            ws.lastCount = 3;
+            ws.lastCheckedAtEpochMillis = System.currentTimeMillis();
+            EventTaskIndex index = new EventTaskIndex();
+            index.reset(Long.toString(1_200_000_000_100L), "de4774f6915eae04714ca93bb2f5ee81");
+            for (int t = 0; t < trackedTasks; t++) {
+                index.add(Long.toString(1_207_345_000_000_000L + t));
+            }
+            eventTasks.put(w.key(), index);
+        }
+        State.save(state, statePath);
+        EventTaskIndex.saveAll(eventTasksPath, eventTasks);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.deleteIfExists(p);
+        }
+    }
+
+    @Benchmark
+    public Config configLoad() throws IOException {
+        return Config.load(configPath);
+    }
+
+    @Benchmark
+    public State stateLoad() throws IOException {
+        return State.load(statePath);
+    }
+
+    // 直列化 + 一時ファイルへの書き込み + fsync + 置き換え
+    @Benchmark
+    public void stateSave() throws IOException {
+        State.save(state, statePath);
+    }
+
+    // StatePersister が変更判定に使う直列化のみ
+    @Benchmark
+    public byte[] stateToBytes() throws IOException {
+        return State.toBytes(state);
+    }
+
+    // events モードの監視があるチェックのたびに行う、未完了タスク集合の書き込み
+    @Benchmark
+    public void eventTasksSave() throws IOException {
+        EventTaskIndex.saveAll(eventTasksPath, eventTasks);
+    }
+
+    @Benchmark
+    public Map<String, EventTaskIndex> eventTasksLoad() {
+        return EventTaskIndex.loadAll(eventTasksPath);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.asanawatcher;
+
+import java.util.concurrent.TimeUnit;
+
+// 監視ごとの次回ポーリング間隔（分）を決めるポリシー。
+// - 閾値まであと 1 件以内、または閾値へ向かって増えている場合は間隔を縮める
+// - 件数が変わらず閾値から遠い場合は、前回の間隔を倍にして上限まで延ばす
+// - 閾値以上（通知済み）や減少中は基準の pollingMinutes に戻す
+// adaptivePolling=false の監視は常に pollingMinutes を返す
+public final class AdaptivePolling {
+    private AdaptivePolling() {}
+
+    // ws は今回の件数を反映する前の状態（前回の件数・チェック時刻・間隔）を渡す
+    public static int nextIntervalMinutes(Config.Watch w, State.WatchState ws, int count, long nowMillis) {
+        int base = Math.max(1, w.pollingMinutes);
+        if (!w.adaptivePolling) {
+            return base;
+        }
+        int min = Math.max(1, w.minPollingMinutes);
+        int max = Math.max(min, w.maxPollingMinutes);
+
+        if (count >= w.threshold) {
+            return clamp(base, min, max);
+        }
+        int distance = w.threshold - count;
+        if (distance <= 1) {
+            return min;
+        }
+        // 初回は変化量が分からないため基準間隔
+        if (ws.lastCheckedAtEpochMillis == 0) {
+            return clamp(base, min, max);
+        }
+        int delta = count - ws.lastCount;
+        double elapsedMinutes = Math.max(1.0, (nowMillis - ws.lastCheckedAtEpochMillis) / (double) TimeUnit.MINUTES.toMillis(1));
+        if (delta > 0) {
+            // 現在の増加ペースで閾値に届くまでの時間の半分を次の間隔にする
+            double etaMinutes = distance * elapsedMinutes / delta;
+            return clamp((int) (etaMinutes / 2), min, max);
+        }
+        if (delta < 0) {
+            return clamp(base, min, max);
+        }
+        int previous = ws.intervalMinutes > 0 ? ws.intervalMinutes : base;
+        return clamp(previous * 2, min, max);
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+
+// Asana API が 2xx 以外を返したことを表す例外（ステータスコードで処理を分岐できるようにする）
+public class AsanaApiException extends IOException {
+    private final int statusCode;
+
+    public AsanaApiException(int statusCode, String body) {
+        super("Asana API error: " + statusCode + " - " + body);
+        this.statusCode = statusCode;
+    }
+
+    public int statusCode() {
+        return statusCode;
+    }
+}
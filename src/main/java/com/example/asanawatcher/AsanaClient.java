@@ -1,9 +1,13 @@
 package com.example.asanawatcher;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
@@ -11,39 +15,176 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 // Asana API への最低限のアクセスを提供するクライアント
-// - プロジェクト内の指定セクション名から GID を検索
+// - プロジェクト内の指定セクション名から GID を検索（結果は TTL 付きでキャッシュ）
 // - セクション内の未完了タスク数をカウント（ページング対応）
-public class AsanaClient {
+// - プロジェクト全体を 1 回走査してセクションごとの未完了数を集計
+// - Events API によるセクションの差分取得
+// - Webhook の登録/確認/削除（プッシュモード）
+// プロセス全体で 1 つのインスタンスを使い回し、HTTP/2 の接続を再利用する想定（スレッドセーフ）
+public class AsanaClient implements AutoCloseable {
+    // セクション GID キャッシュの有効期間（セクションの GID はほぼ変わらないため長め）
+    private static final Duration SECTION_CACHE_TTL = Duration.ofHours(1);
+    // 集計に現れないセクション（空か、削除・作り直し）の GID を引き直す間隔。これより新しい GID は空のセクションとして扱う
+    private static final Duration SECTION_RECHECK_AGE = Duration.ofMinutes(15);
+    // 遮断器が開いているときの疎通確認のタイムアウト（通常のリクエストの 30 秒より短く）
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(5);
+    public static final String DEFAULT_API_BASE = "https://app.asana.com/api/1.0";
+
+    private final String apiBase;
     private final HttpClient client;
     private final ObjectMapper mapper = new ObjectMapper();
     private final String pat;
+    private final RequestScheduler scheduler;
+    // (projectGid, sectionName) -> sectionGid
+    private final Map<String, CachedGid> sectionGidCache = new ConcurrentHashMap<>();
+
+    private record CachedGid(String gid, long fetchedAtNanos) {}
+
+    // セクション GID を受け取って API を呼び出す処理
+    @FunctionalInterface
+    public interface SectionCall<T> {
+        T call(String sectionGid) throws IOException, InterruptedException;
+    }
 
     public AsanaClient(String pat) {
+        this(pat, new RequestScheduler(Config.DEFAULT_REQUESTS_PER_MINUTE, Config.DEFAULT_MAX_CONCURRENT_REQUESTS));
+    }
+
+    public AsanaClient(String pat, RequestScheduler scheduler) {
+        this(pat, scheduler, DEFAULT_API_BASE);
+    }
+
+    // apiBase: API のベース URL（末尾の / なし）。空なら本番の Asana
+    public AsanaClient(String pat, RequestScheduler scheduler, String apiBase) {
         // Personal Access Token（PAT）を保持し、HTTP クライアントを初期化
         this.pat = pat;
+        this.apiBase = normalizeApiBase(apiBase);
+        this.scheduler = scheduler;
         this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
                 .connectTimeout(Duration.ofSeconds(15))
                 .build();
     }
 
+    // このクライアントが指定の PAT で作られたものか（PAT 変更時の作り直し判定に使用）
+    public boolean usesToken(String pat) {
+        return this.pat.equals(pat);
+    }
+
+    // このクライアントが指定の API ベース URL を使うものか
+    public boolean usesApiBase(String apiBase) {
+        return this.apiBase.equals(normalizeApiBase(apiBase));
+    }
+
+    static String normalizeApiBase(String apiBase) {
+        if (apiBase == null || apiBase.isBlank()) return DEFAULT_API_BASE;
+        String b = apiBase.trim();
+        return b.endsWith("/") ? b.substring(0, b.length() - 1) : b;
+    }
+
+    // リクエストのレート制限・再試行を担うスケジューラ
+    public RequestScheduler scheduler() {
+        return scheduler;
+    }
+
+    // リクエストを送れる状態か。遮断器が開いていて疎通確認の時刻を過ぎていれば、最も軽いリクエスト（自分のユーザーの GID のみ）を
+    // レート制限・再試行なし・短いタイムアウトで 1 回だけ送り、レスポンスが返れば遮断器を閉じて true
+    public boolean available() throws InterruptedException {
+        CircuitBreaker breaker = scheduler.breaker();
+        if (!breaker.isOpen()) return true;
+        if (!breaker.probeDue()) return false;
+        HttpRequest req = newRequest(apiBase + "/users/me?opt_fields=gid").timeout(PROBE_TIMEOUT).GET().build();
+        try {
+            HttpResponse<Void> resp = client.send(req, HttpResponse.BodyHandlers.discarding());
+            if (resp.statusCode() / 100 != 5) {
+                Metrics.recordCredentialRequest(scheduler.name(), "probe_ok");
+                breaker.recordSuccess();
+                return true;
+            }
+        } catch (IOException ignored) {
+        }
+        Metrics.recordCredentialRequest(scheduler.name(), "probe_failed");
+        breaker.recordProbeFailure();
+        return false;
+    }
+
+    // キャッシュ済みのセクション GID を返す。未取得または期限切れの場合は API で検索してキャッシュする
+    public Optional<String> resolveSectionGid(String projectGid, String sectionName) throws IOException, InterruptedException {
+        String key = projectGid + "/" + sectionName;
+        CachedGid cached = sectionGidCache.get(key);
+        if (cached != null && System.nanoTime() - cached.fetchedAtNanos() < SECTION_CACHE_TTL.toNanos()) {
+            return Optional.of(cached.gid());
+        }
+        Optional<String> gid = findSectionGidByName(projectGid, sectionName);
+        if (gid.isPresent()) {
+            sectionGidCache.put(key, new CachedGid(gid.get(), System.nanoTime()));
+        } else {
+            sectionGidCache.remove(key);
+        }
+        return gid;
+    }
+
+    // キャッシュ済みのセクション GID が引き直しの間隔より古いか（キャッシュになければ true）
+    public boolean isSectionGidDueForRecheck(String projectGid, String sectionName) {
+        CachedGid cached = sectionGidCache.get(projectGid + "/" + sectionName);
+        return cached == null || System.nanoTime() - cached.fetchedAtNanos() >= SECTION_RECHECK_AGE.toNanos();
+    }
+
+    // キャッシュ済みのセクション GID を破棄する
+    public void invalidateSectionGid(String projectGid, String sectionName) {
+        sectionGidCache.remove(projectGid + "/" + sectionName);
+    }
+
+    // セクション名から GID を解決して call を実行する。
+    // キャッシュした GID で 404 が返った場合（セクション削除・作り直し等）は、GID を引き直して 1 度だけ再試行する。
+    // セクションが見つからなければ Optional.empty()
+    public <T> Optional<T> withSection(String projectGid, String sectionName, SectionCall<T> call) throws IOException, InterruptedException {
+        Optional<String> gid = resolveSectionGid(projectGid, sectionName);
+        if (gid.isEmpty()) return Optional.empty();
+        try {
+            return Optional.of(call.call(gid.get()));
+        } catch (AsanaApiException e) {
+            if (e.statusCode() != 404) throw e;
+            invalidateSectionGid(projectGid, sectionName);
+            gid = resolveSectionGid(projectGid, sectionName);
+            if (gid.isEmpty()) return Optional.empty();
+            return Optional.of(call.call(gid.get()));
+        }
+    }
+
+    // プロジェクトのセクション一覧を 1 回だけ取得し、全セクションの GID をキャッシュする（同名のセクションは先頭を採用）
+    // 同じプロジェクトの多数のセクションを数える前に呼ぶと、セクションごとの一覧取得を省ける。キャッシュした件数を返す
+    public int preloadSectionGids(String projectGid) throws IOException, InterruptedException {
+        JsonNode root = getJson(apiBase + "/projects/" + encode(projectGid) + "/sections");
+        long now = System.nanoTime();
+        Set<String> seen = new HashSet<>();
+        for (JsonNode node : root.path("data")) {
+            String name = node.path("name").asText();
+            if (seen.add(name)) {
+                sectionGidCache.put(projectGid + "/" + name, new CachedGid(node.path("gid").asText(), now));
+            }
+        }
+        return seen.size();
+    }
+
     // 指定したプロジェクト内から、名前が一致するセクションの GID を探す
     // 見つかった場合は Optional に包んで返し、なければ Optional.empty()
     public Optional<String> findSectionGidByName(String projectGid, String targetName) throws IOException, InterruptedException {
-        String url = "https://app.asana.com/api/1.0/projects/" + encode(projectGid) + "/sections";
-        HttpRequest req = HttpRequest.newBuilder(URI.create(url))
-                .header("Authorization", "Bearer " + pat)
-                .GET()
-                .timeout(Duration.ofSeconds(30))
-                .build();
-        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
-        if (resp.statusCode() / 100 != 2) {
-            // 2xx 以外は API エラーとして扱う
-            throw new IOException("Asana API error: " + resp.statusCode() + " - " + resp.body());
-        }
-        JsonNode root = mapper.readTree(resp.body());
+        JsonNode root = getJson(apiBase + "/projects/" + encode(projectGid) + "/sections");
         // data 配列から name が一致するものを探す
         for (JsonNode node : root.path("data")) {
             if (targetName.equals(node.path("name").asText())) {
@@ -55,35 +196,571 @@ public class AsanaClient {
 
     // 指定セクションに含まれる未完了タスクの件数を取得する
     // Asana のページング（next_page.uri）に追従し、全件を走査してカウント
+    // レスポンスは文字列やツリーに展開せず、InputStream からストリーミングで解析する
     public int countIncompleteTasksInSection(String sectionGid) throws IOException, InterruptedException {
-        int count = 0;
-        String nextUrl = "https://app.asana.com/api/1.0/sections/" + encode(sectionGid) + "/tasks?opt_fields=completed&limit=100";
+        return scanSectionTasks(sectionGid, null, null);
+    }
+
+    // 未完了タスクを数えながら、滞留時間の索引（ages）を更新する。作成日時・最終更新日時も取得する
+    // 索引は全ページを読み終えたときだけ確定する（途中で失敗した場合、今回見なかったタスクは次回の走査で削除される）
+    public int countIncompleteTasksInSection(String sectionGid, TaskAgeIndex ages) throws IOException, InterruptedException {
+        return scanSectionTasks(sectionGid, null, ages);
+    }
+
+    // 指定セクションの未完了タスクの GID を全件 gids に渡し、未完了数を返す（イベントによる差分更新の初期化に使用）
+    public int collectIncompleteTaskGids(String sectionGid, Consumer<String> gids) throws IOException, InterruptedException {
+        return scanSectionTasks(sectionGid, gids, null);
+    }
+
+    // セクションのタスク一覧を全ページ走査し、未完了数を返す。incompleteGids が指定されていれば未完了タスクの GID を渡す
+    // ages が指定されていれば作成日時・最終更新日時も取得し、未完了タスクを索引に記録する
+    private int scanSectionTasks(String sectionGid, Consumer<String> incompleteGids, TaskAgeIndex ages) throws IOException, InterruptedException {
+        int[] count = {0};
+        String fields = ages != null ? "completed," + AGE_FIELDS : "completed";
+        if (ages != null) ages.beginPoll(Instant.now().getEpochSecond());
+        forEachPage(apiBase + "/sections/" + encode(sectionGid) + "/tasks?opt_fields=" + fields + "&limit=100", parser -> {
+            TaskPage page = parseTaskPage(parser, incompleteGids, ages);
+            count[0] += page.incomplete();
+            return page.nextUri();
+        });
+        if (ages != null) ages.endPoll();
+        return count[0];
+    }
+
+    // 滞留時間の判定に使う日時
+    private static final String AGE_FIELDS = "created_at,modified_at";
+
+    // 指定セクションの未完了タスクを担当者別・カスタムフィールド（fieldGids、列挙型）の選択肢別に数える
+    // 件数は解析しながら加算し、タスクは保持しない（SectionBreakdown）
+    public SectionBreakdown breakdownIncompleteTasksInSection(String sectionGid, List<String> fieldGids) throws IOException, InterruptedException {
+        return breakdownIncompleteTasksInSection(sectionGid, fieldGids, null);
+    }
+
+    // 内訳を取りながら、滞留時間の索引（ages）も更新する（ages が null なら日時は取得しない）
+    public SectionBreakdown breakdownIncompleteTasksInSection(String sectionGid, List<String> fieldGids, TaskAgeIndex ages)
+            throws IOException, InterruptedException {
+        SectionBreakdown breakdown = new SectionBreakdown(fieldGids);
+        String fields = ages != null ? BREAKDOWN_FIELDS + "," + AGE_FIELDS : BREAKDOWN_FIELDS;
+        if (ages != null) ages.beginPoll(Instant.now().getEpochSecond());
+        forEachPage(apiBase + "/sections/" + encode(sectionGid) + "/tasks?opt_fields=" + fields + "&limit=100",
+                parser -> parseBreakdownPage(parser, breakdown, ages));
+        if (ages != null) ages.endPoll();
+        return breakdown;
+    }
+
+    // 内訳に必要なフィールドだけを要求する（gid は常に返る）
+    private static final String BREAKDOWN_FIELDS = "completed,assignee.name,custom_fields.name,"
+            + "custom_fields.enum_value.name,custom_fields.multi_enum_values.name";
+
+    // プロジェクト内の全タスクを 1 回だけ走査し、セクション GID ごとの未完了数を集計する
+    // 同じプロジェクトの複数セクションを監視する場合、セクション数に関係なくリクエスト数はページ数分で済む
+    public LongIntHashMap countIncompleteTasksBySection(String projectGid) throws IOException, InterruptedException {
+        LongIntHashMap counts = new LongIntHashMap();
+        forEachPage(apiBase + "/projects/" + encode(projectGid) + "/tasks?opt_fields=completed,memberships.section.gid&limit=100",
+                parser -> parseProjectTaskPage(parser, counts));
+        return counts;
+    }
+
+    // 1 ページ分のレスポンスを解析し、次ページの URI（なければ null）を返す
+    @FunctionalInterface
+    private interface PageParser {
+        String parse(JsonParser parser) throws IOException;
+    }
+
+    // firstUrl から next_page.uri をたどって全ページを取得し、各ページを InputStream のまま pageParser に渡す
+    private void forEachPage(String firstUrl, PageParser pageParser) throws IOException, InterruptedException {
+        String nextUrl = firstUrl;
         while (nextUrl != null) {
-            HttpRequest req = HttpRequest.newBuilder(URI.create(nextUrl))
-                    .header("Authorization", "Bearer " + pat)
-                    .GET()
-                    .timeout(Duration.ofSeconds(30))
-                    .build();
-            HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
-            if (resp.statusCode() / 100 != 2) {
-                // 2xx 以外は API エラー
-                throw new IOException("Asana API error: " + resp.statusCode() + " - " + resp.body());
+            HttpRequest req = newRequest(nextUrl).GET().build();
+            HttpResponse<InputStream> resp = scheduler.send(client, req, HttpResponse.BodyHandlers.ofInputStream());
+            Metrics.recordPage();
+            try (InputStream in = resp.body()) {
+                if (resp.statusCode() / 100 != 2) {
+                    // 2xx 以外は API エラー（エラー時のみ本文を文字列化）
+                    throw new AsanaApiException(resp.statusCode(), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                }
+                try (JsonParser parser = mapper.getFactory().createParser(in)) {
+                    // next_page.uri があれば続けて取得、なければ終了
+                    nextUrl = pageParser.parse(parser);
+                }
             }
-            JsonNode root = mapper.readTree(resp.body());
-            // data 配列の completed=false の数を積み上げ
-            for (JsonNode task : root.path("data")) {
-                boolean completed = task.path("completed").asBoolean(false);
-                if (!completed) count++;
+        }
+    }
+
+    // タスク一覧 1 ページ分の解析結果
+    record TaskPage(int incomplete, String nextUri) {}
+
+    // タスク一覧のレスポンス（{"data":[{...,"completed":bool}], "next_page":{"uri":...}}）をトークン単位で読み、
+    // completed が true でないタスク数と next_page.uri だけを取り出す。それ以外の値は読み飛ばす
+    // incompleteGids が指定された場合のみ、未完了タスクの gid を文字列として取り出して渡す
+    static TaskPage parseTaskPage(JsonParser p, Consumer<String> incompleteGids) throws IOException {
+        return parseTaskPage(p, incompleteGids, null);
+    }
+
+    // ages が指定された場合は、未完了タスクの gid（long）と created_at / modified_at（エポック秒）を索引に記録する
+    static TaskPage parseTaskPage(JsonParser p, Consumer<String> incompleteGids, TaskAgeIndex ages) throws IOException {
+        int incomplete = 0;
+        String nextUri = null;
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected Asana response: expected JSON object");
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+                    if (t != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    // completed が無いタスクは未完了扱い（従来の asBoolean(false) と同じ）
+                    boolean completed = false;
+                    String gid = null;
+                    long taskGid = 0L;
+                    long createdAt = 0L;
+                    long modifiedAt = 0L;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        JsonToken v = p.nextToken();
+                        if ("completed".equals(name)) {
+                            completed = v == JsonToken.VALUE_TRUE;
+                        } else if ((incompleteGids != null || ages != null) && "gid".equals(name) && v == JsonToken.VALUE_STRING) {
+                            if (incompleteGids != null) gid = p.getText();
+                            if (ages != null) taskGid = parseGid(p);
+                        } else if (ages != null && "created_at".equals(name) && v == JsonToken.VALUE_STRING) {
+                            createdAt = parseEpochSeconds(p);
+                        } else if (ages != null && "modified_at".equals(name) && v == JsonToken.VALUE_STRING) {
+                            modifiedAt = parseEpochSeconds(p);
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    if (!completed) {
+                        incomplete++;
+                        if (gid != null) incompleteGids.accept(gid);
+                        if (taskGid != 0L) ages.seen(taskGid, createdAt, modifiedAt);
+                    }
+                }
+            } else if ("next_page".equals(field) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("uri".equals(name) && v == JsonToken.VALUE_STRING) {
+                        nextUri = p.getText();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
             }
-            // next_page.uri があれば続けて取得、なければ終了
-            JsonNode next = root.path("next_page");
-            if (next.isMissingNode() || next.isNull() || next.path("uri").isMissingNode()) {
-                nextUrl = null;
+        }
+        return new TaskPage(incomplete, nextUri);
+    }
+
+    // プロジェクトのタスク一覧（{"data":[{"completed":bool,"memberships":[{"section":{"gid":"..."}}]}], "next_page":...}）を
+    // トークン単位で読み、未完了タスクの所属セクションごとに counts へ加算する。次ページの URI を返す
+    // セクション GID は文字列を作らず、パーサの文字バッファから直接 long に変換する
+    static String parseProjectTaskPage(JsonParser p, LongIntHashMap counts) throws IOException {
+        String nextUri = null;
+        // 1 タスク分の所属セクション（通常 1〜数件）。ページ内で使い回す
+        long[] sections = new long[4];
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected Asana response: expected JSON object");
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+                    if (t != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    boolean completed = false;
+                    int sectionCount = 0;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        JsonToken v = p.nextToken();
+                        if ("completed".equals(name)) {
+                            completed = v == JsonToken.VALUE_TRUE;
+                        } else if ("memberships".equals(name) && v == JsonToken.START_ARRAY) {
+                            for (JsonToken m = p.nextToken(); m != JsonToken.END_ARRAY; m = p.nextToken()) {
+                                if (m != JsonToken.START_OBJECT) {
+                                    p.skipChildren();
+                                    continue;
+                                }
+                                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                                    String mName = p.currentName();
+                                    JsonToken mv = p.nextToken();
+                                    if ("section".equals(mName) && mv == JsonToken.START_OBJECT) {
+                                        while (p.nextToken() == JsonToken.FIELD_NAME) {
+                                            String sName = p.currentName();
+                                            JsonToken sv = p.nextToken();
+                                            if ("gid".equals(sName) && sv == JsonToken.VALUE_STRING) {
+                                                if (sectionCount == sections.length) {
+                                                    sections = Arrays.copyOf(sections, sectionCount * 2);
+                                                }
+                                                sections[sectionCount++] = parseGid(p);
+                                            } else {
+                                                p.skipChildren();
+                                            }
+                                        }
+                                    } else {
+                                        p.skipChildren();
+                                    }
+                                }
+                            }
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    if (!completed) {
+                        for (int i = 0; i < sectionCount; i++) counts.add(sections[i], 1);
+                    }
+                }
+            } else if ("next_page".equals(field) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("uri".equals(name) && v == JsonToken.VALUE_STRING) {
+                        nextUri = p.getText();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return nextUri;
+    }
+
+    // 内訳用のタスク一覧（{"data":[{"completed":bool,"assignee":{"gid","name"}|null,
+    //   "custom_fields":[{"gid","name","enum_value":{"gid","name"}|null,"multi_enum_values":[...]}]}], "next_page":...}）を
+    // トークン単位で読み、未完了タスクを breakdown へ加算する。次ページの URI を返す
+    // 1 タスク分の選択肢はページ内で使い回す配列に溜め、completed が分かった時点で加算する
+    static String parseBreakdownPage(JsonParser p, SectionBreakdown breakdown) throws IOException {
+        return parseBreakdownPage(p, breakdown, null);
+    }
+
+    // ages が指定された場合は、未完了タスクを滞留時間の索引にも記録する（parseTaskPage と同じ）
+    static String parseBreakdownPage(JsonParser p, SectionBreakdown breakdown, TaskAgeIndex ages) throws IOException {
+        String nextUri = null;
+        int[] fields = new int[8];
+        long[] options = new long[8];
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Unexpected Asana response: expected JSON object");
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("data".equals(field) && value == JsonToken.START_ARRAY) {
+                for (JsonToken t = p.nextToken(); t != JsonToken.END_ARRAY; t = p.nextToken()) {
+                    if (t != JsonToken.START_OBJECT) {
+                        p.skipChildren();
+                        continue;
+                    }
+                    boolean completed = false;
+                    long assignee = SectionBreakdown.NONE;
+                    int optionCount = 0;
+                    long taskGid = 0L;
+                    long createdAt = 0L;
+                    long modifiedAt = 0L;
+                    while (p.nextToken() == JsonToken.FIELD_NAME) {
+                        String name = p.currentName();
+                        JsonToken v = p.nextToken();
+                        if ("completed".equals(name)) {
+                            completed = v == JsonToken.VALUE_TRUE;
+                        } else if (ages != null && "gid".equals(name) && v == JsonToken.VALUE_STRING) {
+                            taskGid = parseGid(p);
+                        } else if (ages != null && "created_at".equals(name) && v == JsonToken.VALUE_STRING) {
+                            createdAt = parseEpochSeconds(p);
+                        } else if (ages != null && "modified_at".equals(name) && v == JsonToken.VALUE_STRING) {
+                            modifiedAt = parseEpochSeconds(p);
+                        } else if ("assignee".equals(name) && v == JsonToken.START_OBJECT) {
+                            assignee = parseNamedGid(p, breakdown);
+                        } else if ("custom_fields".equals(name) && v == JsonToken.START_ARRAY) {
+                            for (JsonToken c = p.nextToken(); c != JsonToken.END_ARRAY; c = p.nextToken()) {
+                                if (c != JsonToken.START_OBJECT) {
+                                    p.skipChildren();
+                                    continue;
+                                }
+                                // フィールドの gid が選択肢より後に来ることもあるため、選択肢はいったん末尾に積んでから振り分ける
+                                long fieldGid = SectionBreakdown.NONE;
+                                String fieldName = null;
+                                int start = optionCount;
+                                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                                    String cName = p.currentName();
+                                    JsonToken cv = p.nextToken();
+                                    if ("gid".equals(cName) && cv == JsonToken.VALUE_STRING) {
+                                        fieldGid = parseGid(p);
+                                    } else if ("name".equals(cName) && cv == JsonToken.VALUE_STRING) {
+                                        // 内訳を取らないフィールドの名前は記録されないため、毎回文字列を作らないよう除く
+                                        if (fieldGid == SectionBreakdown.NONE
+                                                || (breakdown.fieldIndex(fieldGid) >= 0 && breakdown.needsName(fieldGid))) {
+                                            fieldName = p.getText();
+                                        }
+                                    } else if ("enum_value".equals(cName) && cv == JsonToken.START_OBJECT) {
+                                        if (optionCount == options.length) {
+                                            options = Arrays.copyOf(options, optionCount * 2);
+                                            fields = Arrays.copyOf(fields, optionCount * 2);
+                                        }
+                                        options[optionCount++] = parseNamedGid(p, breakdown);
+                                    } else if ("multi_enum_values".equals(cName) && cv == JsonToken.START_ARRAY) {
+                                        for (JsonToken m = p.nextToken(); m != JsonToken.END_ARRAY; m = p.nextToken()) {
+                                            if (m != JsonToken.START_OBJECT) {
+                                                p.skipChildren();
+                                                continue;
+                                            }
+                                            if (optionCount == options.length) {
+                                                options = Arrays.copyOf(options, optionCount * 2);
+                                                fields = Arrays.copyOf(fields, optionCount * 2);
+                                            }
+                                            options[optionCount++] = parseNamedGid(p, breakdown);
+                                        }
+                                    } else {
+                                        p.skipChildren();
+                                    }
+                                }
+                                int idx = breakdown.fieldIndex(fieldGid);
+                                if (idx < 0) {
+                                    // 内訳を取らないフィールドの選択肢は捨てる
+                                    optionCount = start;
+                                    continue;
+                                }
+                                if (fieldName != null) breakdown.putName(fieldGid, fieldName);
+                                int kept = start;
+                                for (int i = start; i < optionCount; i++) {
+                                    if (options[i] == SectionBreakdown.NONE) continue;
+                                    options[kept] = options[i];
+                                    fields[kept++] = idx;
+                                }
+                                optionCount = kept;
+                            }
+                        } else {
+                            p.skipChildren();
+                        }
+                    }
+                    if (!completed) {
+                        breakdown.addTask(assignee, fields, options, optionCount);
+                        if (taskGid != 0L) ages.seen(taskGid, createdAt, modifiedAt);
+                    }
+                }
+            } else if ("next_page".equals(field) && value == JsonToken.START_OBJECT) {
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    JsonToken v = p.nextToken();
+                    if ("uri".equals(name) && v == JsonToken.VALUE_STRING) {
+                        nextUri = p.getText();
+                    } else {
+                        p.skipChildren();
+                    }
+                }
             } else {
-                nextUrl = next.path("uri").asText(null);
+                p.skipChildren();
             }
         }
-        return count;
+        return nextUri;
+    }
+
+    // {"gid":"...","name":"..."} を読み、gid を返す（無ければ NONE）。名前は未記録の GID のときだけ文字列にして記録する
+    private static long parseNamedGid(JsonParser p, SectionBreakdown breakdown) throws IOException {
+        long gid = SectionBreakdown.NONE;
+        String name = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken v = p.nextToken();
+            if ("gid".equals(field) && v == JsonToken.VALUE_STRING) {
+                gid = parseGid(p);
+            } else if ("name".equals(field) && v == JsonToken.VALUE_STRING) {
+                if (gid == SectionBreakdown.NONE || breakdown.needsName(gid)) name = p.getText();
+            } else {
+                p.skipChildren();
+            }
+        }
+        if (name != null) breakdown.putName(gid, name);
+        return gid;
+    }
+
+    // 現在の文字列トークン（数値のみの GID）を long に変換する
+    static long parseGid(JsonParser p) throws IOException {
+        char[] buf = p.getTextCharacters();
+        int off = p.getTextOffset();
+        int len = p.getTextLength();
+        if (len == 0 || len > 19) {
+            throw new IOException("Unexpected gid: " + p.getText());
+        }
+        long v = 0;
+        try {
+            for (int i = off; i < off + len; i++) {
+                char c = buf[i];
+                if (c < '0' || c > '9') {
+                    throw new IOException("Unexpected gid: " + p.getText());
+                }
+                v = Math.addExact(Math.multiplyExact(v, 10), c - '0');
+            }
+        } catch (ArithmeticException e) {
+            throw new IOException("Unexpected gid: " + p.getText());
+        }
+        return v;
+    }
+
+    // 現在の文字列トークン（"2024-01-02T03:04:05.678Z" 形式の日時）をエポック秒に変換する。
+    // Asana が返す UTC の形式は文字バッファから直接読み、それ以外の形式は OffsetDateTime で解釈する。読めなければ 0
+    static long parseEpochSeconds(JsonParser p) throws IOException {
+        char[] buf = p.getTextCharacters();
+        int off = p.getTextOffset();
+        int len = p.getTextLength();
+        if (len >= 20 && buf[off + len - 1] == 'Z' && buf[off + 4] == '-' && buf[off + 7] == '-' && buf[off + 10] == 'T'
+                && buf[off + 13] == ':' && buf[off + 16] == ':') {
+            int year = digits(buf, off, 4);
+            int month = digits(buf, off + 5, 2);
+            int day = digits(buf, off + 8, 2);
+            int hour = digits(buf, off + 11, 2);
+            int minute = digits(buf, off + 14, 2);
+            int second = digits(buf, off + 17, 2);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31 && hour >= 0 && hour < 24
+                    && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                return daysFromCivil(year, month, day) * 86_400L + hour * 3_600L + minute * 60L + second;
+            }
+        }
+        try {
+            return OffsetDateTime.parse(p.getText()).toEpochSecond();
+        } catch (DateTimeParseException e) {
+            return 0L;
+        }
+    }
+
+    // buf[off..off+n) の 10 進数（数字以外を含めば -1）
+    private static int digits(char[] buf, int off, int n) {
+        int v = 0;
+        for (int i = off; i < off + n; i++) {
+            char c = buf[i];
+            if (c < '0' || c > '9') return -1;
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    // 先発グレゴリオ暦の日付から 1970-01-01 からの日数（LocalDate を作らない）
+    private static long daysFromCivil(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146_097L + doe - 719_468L;
+    }
+
+    // Events API から、リソース（セクション）に関するイベントを同期トークン以降の分だけ取得する。
+    // syncToken が null または期限切れ（412）の場合は expired=true と新しい同期トークンを返す
+    public EventBatch fetchEvents(String resourceGid, String syncToken) throws IOException, InterruptedException {
+        String url = apiBase + "/events?resource=" + encode(resourceGid);
+        if (syncToken != null && !syncToken.isBlank()) {
+            url += "&sync=" + encode(syncToken);
+        }
+        HttpResponse<String> resp = send(url);
+        if (resp.statusCode() == 412) {
+            // 412 Precondition Failed: 本文に新しい同期トークンが入っている
+            JsonNode root = mapper.readTree(resp.body());
+            return new EventBatch(List.of(), root.path("sync").asText(null), false, true);
+        }
+        if (resp.statusCode() / 100 != 2) {
+            throw new AsanaApiException(resp.statusCode(), resp.body());
+        }
+        JsonNode root = mapper.readTree(resp.body());
+        List<TaskEvent> events = new ArrayList<>();
+        for (JsonNode ev : root.path("data")) {
+            JsonNode resource = ev.path("resource");
+            // タスク以外（セクション自体の変更など）は件数に影響しないため無視
+            if (!"task".equals(resource.path("resource_type").asText())) continue;
+            events.add(new TaskEvent(ev.path("action").asText(), resource.path("gid").asText(), ev.path("change").path("field").asText(null)));
+        }
+        return new EventBatch(events, root.path("sync").asText(null), root.path("has_more").asBoolean(false), false);
+    }
+
+    // タスクが未完了で、かつ指定セクションに所属しているか（削除済みなら false）
+    public boolean isTaskIncompleteInSection(String taskGid, String sectionGid) throws IOException, InterruptedException {
+        HttpResponse<String> resp = send(apiBase + "/tasks/" + encode(taskGid) + "?opt_fields=completed,memberships.section.gid");
+        if (resp.statusCode() == 404) return false;
+        if (resp.statusCode() / 100 != 2) {
+            throw new AsanaApiException(resp.statusCode(), resp.body());
+        }
+        JsonNode task = mapper.readTree(resp.body()).path("data");
+        if (task.path("completed").asBoolean(false)) return false;
+        for (JsonNode m : task.path("memberships")) {
+            if (sectionGid.equals(m.path("section").path("gid").asText())) return true;
+        }
+        return false;
+    }
+
+    // リソース（セクション）に Webhook を登録し、Webhook の GID を返す。
+    // Asana はこの呼び出しの中で target へハンドシェイクを送るため、受信サーバは事前に起動しておくこと
+    public String createWebhook(String resourceGid, String target) throws IOException, InterruptedException {
+        ObjectNode data = mapper.createObjectNode();
+        data.putObject("data").put("resource", resourceGid).put("target", target);
+        HttpRequest req = newRequest(apiBase + "/webhooks")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(mapper.writeValueAsString(data)))
+                .build();
+        HttpResponse<String> resp = scheduler.send(client, req, HttpResponse.BodyHandlers.ofString());
+        if (resp.statusCode() / 100 != 2) {
+            throw new AsanaApiException(resp.statusCode(), resp.body());
+        }
+        return mapper.readTree(resp.body()).path("data").path("gid").asText();
+    }
+
+    // Webhook が存在し有効か（配信失敗が続くと Asana 側で無効化・削除される）
+    public boolean isWebhookActive(String webhookGid) throws IOException, InterruptedException {
+        HttpResponse<String> resp = send(apiBase + "/webhooks/" + encode(webhookGid));
+        if (resp.statusCode() == 404) return false;
+        if (resp.statusCode() / 100 != 2) {
+            throw new AsanaApiException(resp.statusCode(), resp.body());
+        }
+        return mapper.readTree(resp.body()).path("data").path("active").asBoolean(false);
+    }
+
+    // Webhook を削除する（既に無い場合は何もしない）
+    public void deleteWebhook(String webhookGid) throws IOException, InterruptedException {
+        HttpResponse<String> resp = scheduler.send(client, newRequest(apiBase + "/webhooks/" + encode(webhookGid)).DELETE().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (resp.statusCode() / 100 != 2 && resp.statusCode() != 404) {
+            throw new AsanaApiException(resp.statusCode(), resp.body());
+        }
+    }
+
+    // Events API の取得結果
+    public record EventBatch(List<TaskEvent> events, String sync, boolean hasMore, boolean expired) {}
+
+    // タスクに関する 1 件のイベント（action: added / removed / changed / deleted / undeleted）
+    public record TaskEvent(String action, String taskGid, String changedField) {}
+
+    // GET を送り、2xx 以外は AsanaApiException として JSON ツリーを返す（小さなレスポンス用）
+    private JsonNode getJson(String url) throws IOException, InterruptedException {
+        HttpResponse<String> resp = send(url);
+        if (resp.statusCode() / 100 != 2) {
+            // 2xx 以外は API エラーとして扱う
+            throw new AsanaApiException(resp.statusCode(), resp.body());
+        }
+        return mapper.readTree(resp.body());
+    }
+
+    // 認証ヘッダ付きで GET を送る（ステータスの判定は呼び出し側）
+    private HttpResponse<String> send(String url) throws IOException, InterruptedException {
+        return scheduler.send(client, newRequest(url).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // 認証ヘッダとタイムアウトを設定したリクエストビルダー
+    private HttpRequest.Builder newRequest(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Authorization", "Bearer " + pat)
+                .timeout(Duration.ofSeconds(30));
+    }
+
+    @Override
+    public void close() {
+        client.close();
     }
 
     // URL パラメータ用に UTF-8 でエンコード
@@ -0,0 +1,231 @@
+package com.example.asanawatcher;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPOutputStream;
+
+// System.out / System.err の出力先。チェック処理のスレッドではディスクに書かない。
+// - 改行までの組み立ては write の同期（synchronized）の下でメモリ上のコピーだけを行う。
+//   System.out / System.err の PrintStream がそれぞれ先にロックを取るため、競合するのは両者の間だけ
+// - 組み立てた 1 行はリングバッファ（CAS のみ・ロックなし）へ積む。一杯なら捨てて件数を数える
+// - 専用スレッド "log-writer" がまとめて取り出してファイルへ書く
+// - 書き込み中にサイズが上限を超えたら .1 へ退避して gzip 圧縮し、.1.gz 〜 .N.gz の N 世代を残す。
+//   ローテーションに失敗したら、さらに上限分を書くまで再試行しない（1 行ごとに失敗し続けない）
+// - 終了時は shutdown() で残りを書き出し、以後の出力は呼び出し元スレッドで直接書く
+final class AsyncLogStream extends OutputStream {
+    private static final int RING_CAPACITY = 8192; // 2 のべき乗
+    private static final int WAKE_INTERVAL = RING_CAPACITY / 8;
+    private static final int MAX_LINE_BYTES = 64 * 1024;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final Path file;
+    private final long maxBytes;
+    private final int generations;
+    private final PrintStream fallback;
+
+    // リングバッファ（複数生産者・単一消費者。各スロットの sequence で空き/書込済みを判定）
+    private final byte[][] slots = new byte[RING_CAPACITY][];
+    private final AtomicLongArray sequence = new AtomicLongArray(RING_CAPACITY);
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // consumerLock で保護
+    private final AtomicLong dropped = new AtomicLong();
+
+    // 書き込み側（consumerLock で保護）
+    private final ReentrantLock consumerLock = new ReentrantLock();
+    private OutputStream out;
+    private long written;
+    // written がこれを超えたらローテーションする
+    private long rotateAtBytes;
+
+    // 改行までの組み立て中の 1 行（PrintStream のロック下で呼ばれる）
+    private byte[] line = new byte[256];
+    private int lineLen;
+
+    private volatile boolean closing;
+    private final Thread writer;
+
+    AsyncLogStream(Path file, long maxBytes, int generations, PrintStream fallback) throws IOException {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.generations = generations;
+        this.fallback = fallback;
+        for (int i = 0; i < RING_CAPACITY; i++) sequence.set(i, i);
+        if (Files.exists(file) && Files.size(file) > maxBytes) rotate();
+        openFile();
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public synchronized void write(int b) {
+        ensureLineCapacity(1);
+        line[lineLen++] = (byte) b;
+        if (b == '\n' || lineLen >= MAX_LINE_BYTES) publishLine();
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        int end = off + len;
+        while (off < end) {
+            int nl = off;
+            while (nl < end && b[nl] != '\n') nl++;
+            int chunk = (nl < end ? nl + 1 : end) - off;
+            ensureLineCapacity(chunk);
+            System.arraycopy(b, off, line, lineLen, chunk);
+            lineLen += chunk;
+            off += chunk;
+            if (nl < end || lineLen >= MAX_LINE_BYTES) publishLine();
+        }
+    }
+
+    // 改行で区切られるまでは積まない（PrintStream の autoflush からも呼ばれるため）
+    @Override
+    public void flush() {
+    }
+
+    // 残りの行を書き出し、以後は呼び出し元スレッドで直接書く（shutdown hook から呼ぶ）
+    void shutdown() {
+        synchronized (this) {
+            if (lineLen > 0) publishLine();
+            closing = true;
+        }
+        drain();
+    }
+
+    private void ensureLineCapacity(int extra) {
+        if (lineLen + extra > line.length) {
+            line = Arrays.copyOf(line, Math.max(line.length * 2, lineLen + extra));
+        }
+    }
+
+    private void publishLine() {
+        byte[] copy = Arrays.copyOf(line, lineLen);
+        lineLen = 0;
+        if (line.length > 4096) line = new byte[256];
+        if (!offer(copy)) dropped.incrementAndGet();
+        if (closing) drain();
+    }
+
+    private boolean offer(byte[] value) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & (RING_CAPACITY - 1));
+            long diff = sequence.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[idx] = value;
+                    sequence.set(idx, pos + 1); // 書込済みを公開
+                    // 大量に出力されているときは待機中の書き込みスレッドを早めに起こす
+                    if ((pos & (WAKE_INTERVAL - 1)) == WAKE_INTERVAL - 1) LockSupport.unpark(writer);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false; // 一杯
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    // consumerLock の保持中のみ呼ぶ
+    private byte[] poll() {
+        int idx = (int) (head & (RING_CAPACITY - 1));
+        if (sequence.get(idx) != head + 1) return null;
+        byte[] value = slots[idx];
+        slots[idx] = null;
+        sequence.set(idx, head + RING_CAPACITY); // スロットを空きに戻す
+        head++;
+        return value;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            if (drain() == 0) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // 積まれている行をすべて書き出す。書いた行数を返す
+    private int drain() {
+        consumerLock.lock();
+        try {
+            int n = 0;
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                writeBytes(("(ログバッファが一杯のため " + lost + " 行を破棄)\n").getBytes(StandardCharsets.UTF_8));
+            }
+            byte[] b;
+            while ((b = poll()) != null) {
+                writeBytes(b);
+                n++;
+                if (written > rotateAtBytes) {
+                    out.close();
+                    rotate();
+                    openFile();
+                }
+            }
+            if (n > 0 || lost > 0) out.flush();
+            return n;
+        } catch (IOException e) {
+            fallback.println("ログの書き込みに失敗: " + e.getMessage());
+            return 0;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    private void writeBytes(byte[] b) throws IOException {
+        out.write(b);
+        written += b.length;
+    }
+
+    private void openFile() throws IOException {
+        out = new BufferedOutputStream(new FileOutputStream(file.toFile(), true), 64 * 1024);
+        written = Files.size(file);
+        // ローテーションできずに上限を超えたままなら、次に試すのはさらに maxBytes 書いた後
+        rotateAtBytes = written > maxBytes ? written + maxBytes : maxBytes;
+    }
+
+    // 現在のログを .1 へ移して .1.gz に圧縮し、古い世代を 1 つずつずらす（.N.gz より古いものは削除）
+    private void rotate() {
+        try {
+            Files.deleteIfExists(generation(generations));
+            for (int i = generations - 1; i >= 1; i--) {
+                Path g = generation(i);
+                if (Files.exists(g)) Files.move(g, generation(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+            Path plain = file.resolveSibling(file.getFileName() + ".1");
+            Files.move(file, plain, StandardCopyOption.REPLACE_EXISTING);
+            Path gz = generation(1);
+            Path tmp = gz.resolveSibling(gz.getFileName() + ".tmp");
+            try (InputStream in = Files.newInputStream(plain);
+                 OutputStream zout = new GZIPOutputStream(Files.newOutputStream(tmp), 64 * 1024)) {
+                in.transferTo(zout);
+            }
+            Files.move(tmp, gz, StandardCopyOption.REPLACE_EXISTING);
+            Files.deleteIfExists(plain);
+        } catch (IOException e) {
+            // ローテーションに失敗しても追記は続ける
+            fallback.println("ログのローテーションに失敗: " + e.getMessage());
+        }
+    }
+
+    private Path generation(int i) {
+        return file.resolveSibling(file.getFileName() + "." + i + ".gz");
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.asanawatcher;
+
+import java.awt.*;
+import java.io.IOException;
+
+// AWT のトレイバルーン通知（クリック動作なし）
+public class AwtBalloonBackend implements NotificationBackend {
+    public static final String NAME = "awt";
+
+    private final boolean supported;
+    private final Image trayImage;
+
+    public AwtBalloonBackend() {
+        this.supported = !GraphicsEnvironment.isHeadless() && SystemTray.isSupported();
+        this.trayImage = supported ? TrayApp.createDefaultIcon() : null;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return supported;
+    }
+
+    @Override
+    public void show(String title, String message) throws IOException {
+        SystemTray tray = SystemTray.getSystemTray();
+        TrayIcon trayIcon = new TrayIcon(trayImage, "AsanaWatcher");
+        trayIcon.setImageAutoSize(true);
+        try {
+            tray.add(trayIcon);
+        } catch (AWTException e) {
+            throw new IOException("トレイアイコンを追加できません: " + e.getMessage(), e);
+        }
+        try {
+            trayIcon.displayMessage(title, message, TrayIcon.MessageType.INFO);
+        } finally {
+            try { tray.remove(trayIcon); } catch (Exception ignored) {}
+        }
+    }
+}
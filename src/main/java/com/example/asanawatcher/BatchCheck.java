@@ -0,0 +1,320 @@
+package com.example.asanawatcher;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// --once: 指定したセクションの未完了数を 1 回だけ数えて JSON / CSV で出力し、終了コードで結果を返す（cron・CI 用）
+// トレイ・スケジューラ・通知・状態ファイル・ファイルログは使わない（config.json は読むだけで書かない）
+//
+// 例: java -jar asana-watcher.jar --once --format=csv 1200000000001:Doing=5 1200000000001:Review
+// - 対象は <projectGid>:<セクション名>[=閾値]。省略時は config.json の監視一覧
+// - PAT は環境変数 ASANA_PAT、なければ config.json の personalAccessToken。監視・--credential で名前付きの認証情報も使える
+//   （認証情報ごとに AsanaClient を分け、レート制限も認証情報ごと）
+// - 終了コード: 0 = すべて閾値未満 / 1 = 閾値以上のセクションあり / 2 = 引数・設定の誤り / 3 = 取得できないセクションあり
+final class BatchCheck {
+    static final int EXIT_OK = 0;
+    static final int EXIT_THRESHOLD_EXCEEDED = 1;
+    static final int EXIT_USAGE = 2;
+    static final int EXIT_FETCH_FAILED = 3;
+
+    static final String PAT_ENV = "ASANA_PAT";
+
+    private static final String USAGE = """
+            使い方: --once [--format=json|csv] [--mode=scan|project] [--threshold=N] [--config=<config.json>]
+                           [--credential=<名前>] [<projectGid>:<セクション名>[=閾値] ...]
+              対象を省略すると config.json の監視一覧を数えます。PAT は環境変数 ASANA_PAT または config.json
+              （--credential で config.json の credentials の名前を指定）
+              終了コード: 0 すべて閾値未満 / 1 閾値以上あり / 2 引数・設定の誤り / 3 取得できないセクションあり""";
+
+    // 1 セクション分の結果（count は取得できなかった場合 -1）
+    record Result(String projectGid, String sectionName, String label, int threshold, int count, String error) {
+        boolean exceeded() {
+            return error == null && threshold > 0 && count >= threshold;
+        }
+    }
+
+    private BatchCheck() {}
+
+    // 引数を解釈して数え、結果を out へ書き出して終了コードを返す。defaultConfig は --config 省略時の設定ファイル
+    static int run(String[] args, Path defaultConfig, PrintStream out, PrintStream err) {
+        String format = "json";
+        String mode = null;
+        Integer defaultThreshold = null;
+        Path configPath = defaultConfig;
+        String credential = null;
+        List<String> targets = new ArrayList<>();
+        for (String a : args) {
+            if (a.equals("--once")) continue;
+            try {
+                if (a.startsWith("--format=")) format = a.substring("--format=".length()).toLowerCase();
+                else if (a.startsWith("--mode=")) mode = a.substring("--mode=".length()).toLowerCase();
+                else if (a.startsWith("--threshold=")) defaultThreshold = Integer.parseInt(a.substring("--threshold=".length()));
+                else if (a.startsWith("--config=")) configPath = Path.of(a.substring("--config=".length()));
+                else if (a.startsWith("--credential=")) credential = a.substring("--credential=".length());
+                else if (a.equals("--help") || a.equals("-h")) {
+                    err.println(USAGE);
+                    return EXIT_USAGE;
+                } else if (a.startsWith("--")) {
+                    err.println("不明なオプション: " + a);
+                    err.println(USAGE);
+                    return EXIT_USAGE;
+                } else targets.add(a);
+            } catch (NumberFormatException e) {
+                err.println("数値ではありません: " + a);
+                return EXIT_USAGE;
+            }
+        }
+        if (!format.equals("json") && !format.equals("csv")) {
+            err.println("--format は json か csv です: " + format);
+            return EXIT_USAGE;
+        }
+        if (mode != null && !mode.equals(Config.Watch.MODE_SCAN) && !mode.equals(Config.Watch.MODE_PROJECT)) {
+            err.println("--mode は scan か project です: " + mode);
+            return EXIT_USAGE;
+        }
+
+        // 設定ファイルは無くてもよい（Config.load は既定値を書き出すため、ここでは存在するときだけ読む）
+        Config cfg;
+        try {
+            cfg = Files.exists(configPath) ? Config.load(configPath) : new Config();
+        } catch (IOException e) {
+            err.println("設定ファイルを読めません: " + configPath + " (" + e.getMessage() + ")");
+            return EXIT_USAGE;
+        }
+        // ASANA_PAT はトップレベルの personalAccessToken（default の認証情報）を置き換える
+        String envPat = System.getenv(PAT_ENV);
+        if (envPat != null && !envPat.isBlank()) cfg.personalAccessToken = envPat;
+
+        List<Config.Watch> watches = new ArrayList<>();
+        if (targets.isEmpty()) {
+            for (Config.Watch w : cfg.effectiveWatches()) {
+                if (w.projectGid == null || w.projectGid.isBlank() || w.targetSectionName == null || w.targetSectionName.isBlank()) continue;
+                // 以下で認証情報・閾値・数え方を上書きするため、設定の Watch は複製して使う
+                watches.add(w.copy());
+            }
+            if (watches.isEmpty()) {
+                err.println("数える対象がありません。<projectGid>:<セクション名> を指定するか config.json に監視を設定してください");
+                return EXIT_USAGE;
+            }
+        } else {
+            for (String t : targets) {
+                Config.Watch w = parseTarget(t, defaultThreshold != null ? defaultThreshold : cfg.threshold);
+                if (w == null) {
+                    err.println("対象の形式が正しくありません（<projectGid>:<セクション名>[=閾値]）: " + t);
+                    return EXIT_USAGE;
+                }
+                watches.add(w);
+            }
+        }
+        Map<String, Config.Credential> credentials = new LinkedHashMap<>();
+        for (Config.Watch w : watches) {
+            if (credential != null) w.credential = credential;
+            Config.Credential c = cfg.credentialFor(w);
+            if (c == null) {
+                err.println("認証情報が見つかりません: " + w.credential);
+                return EXIT_USAGE;
+            }
+            if (!c.hasToken()) {
+                err.println("PAT がありません（" + c.label() + "）。環境変数 " + PAT_ENV + " か config.json の personalAccessToken / credentials を設定してください");
+                return EXIT_USAGE;
+            }
+            credentials.putIfAbsent(c.label(), c);
+        }
+        for (Config.Watch w : watches) {
+            if (defaultThreshold != null && targets.isEmpty()) w.threshold = defaultThreshold;
+            // events は状態を持ち越せないため毎回の全件走査と同じ。--mode があればそれに揃える
+            if (mode != null) w.countMode = mode;
+            else if (!Config.Watch.MODE_PROJECT.equals(w.countMode)) w.countMode = Config.Watch.MODE_SCAN;
+        }
+
+        List<Result> results = countByCredential(cfg, credentials.values(), watches);
+        try {
+            if (format.equals("csv")) writeCsv(results, out);
+            else writeJson(results, out);
+        } catch (IOException e) {
+            err.println("結果を書き出せません: " + e.getMessage());
+            return EXIT_USAGE;
+        }
+        out.flush();
+
+        boolean failed = false;
+        boolean exceeded = false;
+        for (Result r : results) {
+            if (r.error() != null) {
+                failed = true;
+                err.println("[" + r.label() + "] " + r.error());
+            }
+            exceeded |= r.exceeded();
+        }
+        return failed ? EXIT_FETCH_FAILED : exceeded ? EXIT_THRESHOLD_EXCEEDED : EXIT_OK;
+    }
+
+    // "<projectGid>:<セクション名>[=閾値]" を解釈する。GID は数字のみのため最初の ':' で区切る
+    static Config.Watch parseTarget(String s, int defaultThreshold) {
+        int colon = s.indexOf(':');
+        if (colon <= 0 || colon == s.length() - 1) return null;
+        String project = s.substring(0, colon).trim();
+        String section = s.substring(colon + 1);
+        int threshold = defaultThreshold;
+        int eq = section.lastIndexOf('=');
+        if (eq > 0 && eq < section.length() - 1 && section.substring(eq + 1).chars().allMatch(Character::isDigit)) {
+            threshold = Integer.parseInt(section.substring(eq + 1));
+            section = section.substring(0, eq);
+        }
+        if (project.isEmpty() || section.isBlank()) return null;
+        Config.Watch w = new Config.Watch();
+        w.projectGid = project;
+        w.targetSectionName = section;
+        w.threshold = threshold;
+        return w;
+    }
+
+    // 認証情報ごとに AsanaClient を作り、認証情報ごとのまとまりを並列に数える。結果は入力の順
+    private static List<Result> countByCredential(Config cfg, Iterable<Config.Credential> credentials, List<Config.Watch> watches) {
+        Result[] results = new Result[watches.size()];
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Config.Credential c : credentials) {
+                List<Integer> indexes = new ArrayList<>();
+                for (int i = 0; i < watches.size(); i++) {
+                    if (c.label().equals(cfg.credentialFor(watches.get(i)).label())) indexes.add(i);
+                }
+                exec.submit(() -> {
+                    try (AsanaClient client = new AsanaClient(c.personalAccessToken,
+                            new RequestScheduler(c.label(), c.requestsPerMinute, c.maxConcurrentRequests), c.apiBaseUrl)) {
+                        List<Result> part = count(client, indexes.stream().map(watches::get).toList());
+                        for (int j = 0; j < indexes.size(); j++) results[indexes.get(j)] = part.get(j);
+                    }
+                });
+            }
+        }
+        return List.of(results);
+    }
+
+    // すべての対象を並列に数える（scan はセクションごと、project はプロジェクトごとに仮想スレッド 1 本）。
+    // 全体のリクエスト数と同時実行数は RequestScheduler が config.json の上限に抑える。結果は入力の順
+    static List<Result> count(AsanaClient client, List<Config.Watch> watches) {
+        Result[] results = new Result[watches.size()];
+        Map<String, List<Integer>> byProject = new LinkedHashMap<>();
+        // 同じプロジェクトの対象が複数あれば、セクション一覧は先にプロジェクトごとに 1 回だけ取得する
+        Map<String, Integer> perProject = new LinkedHashMap<>();
+        for (Config.Watch w : watches) perProject.merge(w.projectGid, 1, Integer::sum);
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Map.Entry<String, Integer> e : perProject.entrySet()) {
+                if (e.getValue() < 2) continue;
+                exec.submit(() -> {
+                    // 失敗してもセクションごとの解決で再試行されるので、ここでは無視する
+                    try { client.preloadSectionGids(e.getKey()); } catch (Exception ignored) {}
+                });
+            }
+        }
+        try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < watches.size(); i++) {
+                Config.Watch w = watches.get(i);
+                if (Config.Watch.MODE_PROJECT.equals(w.countMode)) {
+                    byProject.computeIfAbsent(w.projectGid, k -> new ArrayList<>()).add(i);
+                    continue;
+                }
+                int idx = i;
+                exec.submit(() -> results[idx] = countSection(client, w));
+            }
+            for (Map.Entry<String, List<Integer>> e : byProject.entrySet()) {
+                exec.submit(() -> countProject(client, e.getKey(), e.getValue(), watches, results));
+            }
+        }
+        return List.of(results);
+    }
+
+    private static Result countSection(AsanaClient client, Config.Watch w) {
+        try {
+            Optional<Integer> count = client.withSection(w.projectGid, w.targetSectionName, client::countIncompleteTasksInSection);
+            return count.map(c -> result(w, c, null)).orElseGet(() -> result(w, -1, "セクションが見つかりません"));
+        } catch (Exception e) {
+            return result(w, -1, LoggerUtil.errorMessage(e));
+        }
+    }
+
+    // プロジェクトのタスク一覧を 1 回だけ走査し、同じプロジェクトの対象をまとめて埋める
+    private static void countProject(AsanaClient client, String projectGid, List<Integer> indexes, List<Config.Watch> watches,
+                                     Result[] results) {
+        LongIntHashMap counts;
+        try {
+            counts = client.countIncompleteTasksBySection(projectGid);
+        } catch (Exception e) {
+            for (int i : indexes) results[i] = result(watches.get(i), -1, LoggerUtil.errorMessage(e));
+            return;
+        }
+        for (int i : indexes) {
+            Config.Watch w = watches.get(i);
+            try {
+                Optional<String> gid = client.resolveSectionGid(projectGid, w.targetSectionName);
+                results[i] = gid.isPresent()
+                        ? result(w, counts.get(Long.parseLong(gid.get())), null)
+                        : result(w, -1, "セクションが見つかりません");
+            } catch (Exception e) {
+                results[i] = result(w, -1, LoggerUtil.errorMessage(e));
+            }
+        }
+    }
+
+    private static Result result(Config.Watch w, int count, String error) {
+        return new Result(w.projectGid, w.targetSectionName, w.label(), w.threshold, count, error);
+    }
+
+    // [{"project":...,"section":...,"name":...,"count":N,"threshold":N,"exceeded":bool[,"error":...]}, ...]
+    static void writeJson(List<Result> results, PrintStream out) throws IOException {
+        try (JsonGenerator g = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            g.writeStartArray();
+            for (Result r : results) {
+                g.writeStartObject();
+                g.writeStringField("project", r.projectGid());
+                g.writeStringField("section", r.sectionName());
+                g.writeStringField("name", r.label());
+                if (r.error() == null) g.writeNumberField("count", r.count());
+                else g.writeNullField("count");
+                g.writeNumberField("threshold", r.threshold());
+                g.writeBooleanField("exceeded", r.exceeded());
+                if (r.error() != null) g.writeStringField("error", r.error());
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+        }
+        out.println();
+    }
+
+    // ヘッダー付き CSV（RFC 4180 の引用。取得できなかった行の count は空）
+    static void writeCsv(List<Result> results, PrintStream out) {
+        out.println("project,section,name,count,threshold,exceeded,error");
+        StringBuilder sb = new StringBuilder();
+        for (Result r : results) {
+            sb.setLength(0);
+            sb.append(csv(r.projectGid())).append(',')
+                    .append(csv(r.sectionName())).append(',')
+                    .append(csv(r.label())).append(',')
+                    .append(r.error() == null ? Integer.toString(r.count()) : "").append(',')
+                    .append(r.threshold()).append(',')
+                    .append(r.exceeded()).append(',')
+                    .append(r.error() == null ? "" : csv(r.error()));
+            out.println(sb);
+        }
+    }
+
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
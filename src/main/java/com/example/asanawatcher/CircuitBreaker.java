@@ -0,0 +1,119 @@
+package com.example.asanawatcher;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Asana API への接続の遮断器（認証情報ごとに 1 つ。RequestScheduler が持つ）
+// - 接続失敗・タイムアウト、または再試行しても 5xx のリクエストが FAILURE_THRESHOLD 回続いたら開き、
+//   以後のリクエストは送らずに CircuitOpenException で即座に失敗させる（タイムアウト待ちのスレッドを溜めない）
+// - 開いている間は、疎通確認の時刻を過ぎたときだけ AsanaClient#available が軽いリクエストを 1 回送る。
+//   成功で閉じ、失敗すると次の確認までの間隔を倍（MAX_OPEN_MILLIS まで）に延ばす
+// - 429・401/403 などレスポンスが返った場合は接続できているとみなす（それぞれ RequestScheduler が扱う）
+public final class CircuitBreaker {
+    private static final int FAILURE_THRESHOLD = 3;
+    private static final long MIN_OPEN_MILLIS = 30_000L;
+    private static final long MAX_OPEN_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final String name;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile int consecutiveFailures;
+    private volatile boolean open;
+    // 開いた時刻（エポックミリ秒）・次の疎通確認の時刻・現在の確認間隔
+    private long openedAtMillis;
+    private long probeAtNanos;
+    private long openMillis;
+
+    // name: 認証情報の名前（ログ・メトリクスのラベル）
+    public CircuitBreaker(String name) {
+        this.name = name;
+    }
+
+    public boolean isOpen() {
+        return open;
+    }
+
+    // 開いていればリクエストを送らずに失敗させる
+    void check() throws CircuitOpenException {
+        if (!open) return;
+        lock.lock();
+        try {
+            if (open) {
+                long waitMillis = Math.max(0L, TimeUnit.NANOSECONDS.toMillis(probeAtNanos - System.nanoTime()));
+                throw new CircuitOpenException(name, Instant.ofEpochMilli(openedAtMillis), waitMillis);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 開いていて、疎通確認の時刻を過ぎているか
+    boolean probeDue() {
+        if (!open) return false;
+        lock.lock();
+        try {
+            return open && System.nanoTime() - probeAtNanos >= 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 次のチェックですぐに疎通を確認する（ネットワークの再接続時）
+    void probeNow() {
+        lock.lock();
+        try {
+            if (open) probeAtNanos = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // レスポンスを受け取れた（接続できている）
+    void recordSuccess() {
+        if (!open && consecutiveFailures == 0) return;
+        lock.lock();
+        try {
+            if (open) {
+                long seconds = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - openedAtMillis);
+                System.out.println(Instant.now() + " [" + name + "] Asana API への接続が回復しました（停止 " + seconds + " 秒）");
+                Metrics.setCircuitOpen(name, false);
+            }
+            open = false;
+            consecutiveFailures = 0;
+            openMillis = 0L;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 接続失敗・タイムアウト・再試行後の 5xx（開く前から送っていたリクエストの失敗は、開いた後は数えない）
+    void recordFailure() {
+        lock.lock();
+        try {
+            if (open) return;
+            consecutiveFailures++;
+            if (consecutiveFailures < FAILURE_THRESHOLD) return;
+            open = true;
+            openedAtMillis = System.currentTimeMillis();
+            openMillis = MIN_OPEN_MILLIS;
+            probeAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openMillis);
+            Metrics.setCircuitOpen(name, true);
+            System.err.println(Instant.now() + " [" + name + "] Asana API への接続に " + consecutiveFailures
+                    + " 回続けて失敗したため、リクエストを停止します（" + TimeUnit.MILLISECONDS.toSeconds(openMillis) + " 秒後に疎通を確認）");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // 疎通確認に失敗した。次の確認までの間隔を倍にする
+    void recordProbeFailure() {
+        lock.lock();
+        try {
+            if (!open) return;
+            openMillis = Math.min(MAX_OPEN_MILLIS, openMillis * 2);
+            probeAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(openMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
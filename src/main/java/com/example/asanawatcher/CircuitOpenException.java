@@ -0,0 +1,11 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.time.Instant;
+
+// CircuitBreaker が開いているため、リクエストを送らずに失敗させたことを表す例外
+public class CircuitOpenException extends IOException {
+    public CircuitOpenException(String credential, Instant openedAt, long probeInMillis) {
+        super("[" + credential + "] Asana API への接続を停止中（" + openedAt + " から、" + (probeInMillis / 1000) + " 秒後に疎通を確認）");
+    }
+}
@@ -7,11 +7,18 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
 
 // アプリのユーザー設定（JSON ファイルに保存/読み込み）
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Config {
+    // Asana のレート制限（無料プラン 150 件/分）と同時実行数（GET 50 件）を下回る既定値
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 150;
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 10;
+    public static final List<String> DEFAULT_NOTIFICATION_BACKENDS = List.of("snoretoast", "awt", "log");
+
     // Asana の PAT（Personal Access Token）
     public String personalAccessToken = "";
     // 対象プロジェクトの GID
@@ -22,19 +29,264 @@ public class Config {
     public int threshold = 5;
     // ポーリング間隔（分）
     public int pollingMinutes = 3;
+    // true のとき、ポーリング間隔を minPollingMinutes〜maxPollingMinutes の範囲で自動調整
+    public boolean adaptivePolling = false;
+    public int minPollingMinutes = 1;
+    public int maxPollingMinutes = 15;
     // 再通知までのクールダウン（分）
     public int cooldownMinutes = 30;
     // ボードの URL（通知や設定で参照）
     public String boardUrl = "";
     // SnoreToast.exe のパス（インストール先 or 作業ディレクトリからの相対パスも可）
     public String snoreToastPath = "bin/SnoreToast.exe"; // relative to install dir or working dir
+    // 通知バックエンドを試す順番（snoretoast / awt / log / webhook）。失敗したら次を試す
+    public List<String> notificationBackends = new ArrayList<>(DEFAULT_NOTIFICATION_BACKENDS);
+    // webhook バックエンドの POST 先（{"title": ..., "message": ...} を送る）
+    public String notificationWebhookUrl = "";
+    // プッシュモード: Webhook 受信サーバを起動し、セクションの変更通知を受けたときだけチェックする
+    public boolean webhookEnabled = false;
+    // 受信サーバの待受ポート
+    public int webhookPort = 8787;
+    // Asana から到達できる受信サーバの公開 URL（リバースプロキシやトンネルの URL）
+    public String webhookPublicUrl = "";
+    // プッシュモード中の取りこぼし対策のポーリング間隔（分）
+    public int webhookSafetyPollMinutes = 60;
+    // メトリクス（Prometheus のテキスト形式）を http://<metricsBindAddress>:<metricsPort>/metrics で公開
+    public boolean metricsEnabled = false;
+    public int metricsPort = 9464;
+    // 既定はローカルのみ。他のマシンから収集する場合は 0.0.0.0 など
+    public String metricsBindAddress = "127.0.0.1";
+    // 件数履歴（history.bin）の最大件数。1 件 24 バイトで、古いものから上書き。0 で無効
+    public int historyMaxRecords = 1_048_576;
+    // Asana API へのリクエスト数の上限（件/分）。有料プランでは 1500 まで引き上げ可能
+    public int requestsPerMinute = DEFAULT_REQUESTS_PER_MINUTE;
+    // Asana API への同時リクエスト数の上限
+    public int maxConcurrentRequests = DEFAULT_MAX_CONCURRENT_REQUESTS;
+    // Asana API のベース URL。空なら https://app.asana.com/api/1.0（検証用の偽サーバやプロキシを使う場合のみ指定）
+    public String apiBaseUrl = "";
+    // ネットワークの接続状態を確認する間隔（秒）。切断中はチェックを止め、再接続したらすぐにチェックする。0 で無効（起動時のみ反映）
+    public int offlineCheckSeconds = 15;
+    // 名前付きの認証情報（ワークスペースごとに別の PAT を使う場合）。監視の credential で名前を指定する
+    public List<Credential> credentials = new ArrayList<>();
+    // 複数セクションの監視定義。空の場合は上記の単一設定（projectGid / targetSectionName 等）を 1 件として扱う
+    public List<Watch> watches = new ArrayList<>();
+
+    // 1 つの PAT と、その PAT で使うレート制限・API の URL。
+    // 認証情報ごとに HttpClient・レート制限・429 の待機・失敗の集計を分けるため、一方の制限や認証エラーが他方を遅らせない
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Credential {
+        public String name = "";
+        public String personalAccessToken = "";
+        // 0 ならトップレベルの requestsPerMinute / maxConcurrentRequests を使う（Asana の制限は PAT ごと）
+        public int requestsPerMinute = 0;
+        public int maxConcurrentRequests = 0;
+        // 空ならトップレベルの apiBaseUrl を使う
+        public String apiBaseUrl = "";
+
+        public boolean hasToken() {
+            return personalAccessToken != null && !personalAccessToken.isBlank();
+        }
+
+        // ログ・メトリクスに使う名前（トップレベルの PAT は default）
+        public String label() {
+            return name == null || name.isEmpty() ? DEFAULT_CREDENTIAL : name;
+        }
+    }
+
+    // 監視の credential が空のときに使う、トップレベルの personalAccessToken 等の名前
+    public static final String DEFAULT_CREDENTIAL = "default";
+
+    // 1 つの監視対象（プロジェクト + セクション）ごとの設定
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Watch {
+        // 件数の数え方: scan（毎回全件走査）/ events（Events API で差分更新）/ project（プロジェクト単位で一括集計）
+        public static final String MODE_SCAN = "scan";
+        public static final String MODE_EVENTS = "events";
+        public static final String MODE_PROJECT = "project";
+        // 滞留時間の起点: section（この列で最初に見た時刻）/ created（作成日時）/ modified（最終更新日時）
+        public static final String AGE_FROM_SECTION = "section";
+        public static final String AGE_FROM_CREATED = "created";
+        public static final String AGE_FROM_MODIFIED = "modified";
+
+        // 表示名（空ならセクション名を使用）
+        public String name = "";
+        public String projectGid = "";
+        public String targetSectionName = "";
+        public int threshold = 5;
+        public int pollingMinutes = 3;
+        public int cooldownMinutes = 30;
+        // 空なら Config.boardUrl を使用
+        public String boardUrl = "";
+        public String countMode = MODE_SCAN;
+        // true のとき、閾値までの距離と件数の変化に応じて間隔を min〜max の範囲で調整（AdaptivePolling）
+        public boolean adaptivePolling = false;
+        public int minPollingMinutes = 1;
+        public int maxPollingMinutes = 15;
+        // 担当者別に加えて内訳を取るカスタムフィールド（列挙型）の GID。指定があるとログに内訳を出す
+        public List<String> breakdownFields = new ArrayList<>();
+        // 内訳の区分ごとの閾値（例: 優先度が P1 のタスクが 4 件以上）。判定・クールダウンは監視全体と同じ
+        public List<BucketThreshold> bucketThresholds = new ArrayList<>();
+        // 使う認証情報の名前（Config.credentials）。空ならトップレベルの personalAccessToken
+        public String credential = "";
+        // 最も古い未完了タスクの滞留時間の上限（時間）。0 で無効。超えたら件数の閾値と同じ規則（下→上の遷移・クールダウン）で通知
+        public int maxTaskAgeHours = 0;
+        public String taskAgeFrom = AGE_FROM_SECTION;
+
+        // 内訳付きで数えるか（内訳は常にセクションのタスク一覧を走査して数える）
+        public boolean usesBreakdown() {
+            return (breakdownFields != null && !breakdownFields.isEmpty())
+                    || (bucketThresholds != null && !bucketThresholds.isEmpty());
+        }
+
+        // 滞留時間を監視するか（タスクの日時と最初に見た時刻の索引を使うため、セクションを走査して数える）
+        public boolean usesTaskAge() {
+            return maxTaskAgeHours > 0;
+        }
+
+        // タスク一覧の走査が必要な監視か（countMode の events / project より優先）
+        public boolean scansSection() {
+            return usesBreakdown() || usesTaskAge();
+        }
+
+        // Events API の差分で数えるか（countMode=events で、セクションを走査する機能を使わない場合）
+        public boolean usesEvents() {
+            return MODE_EVENTS.equals(countMode) && !scansSection();
+        }
+
+        // 内訳を取るカスタムフィールドの GID（breakdownFields と、閾値で参照しているもの）
+        public List<String> breakdownFieldGids() {
+            List<String> gids = new ArrayList<>();
+            if (breakdownFields != null) {
+                for (String f : breakdownFields) {
+                    if (f != null && !f.isBlank() && !gids.contains(f.trim())) gids.add(f.trim());
+                }
+            }
+            if (bucketThresholds != null) {
+                for (BucketThreshold t : bucketThresholds) {
+                    String f = t.field == null ? "" : t.field.trim();
+                    if (!f.isEmpty() && !SectionBreakdown.ASSIGNEE.equalsIgnoreCase(f) && !gids.contains(f)) gids.add(f);
+                }
+            }
+            return gids;
+        }
+
+        // 状態（State.watches）のキー
+        public String key() {
+            return projectGid + "/" + targetSectionName;
+        }
+
+        // ログや通知に使う表示名
+        public String label() {
+            return name != null && !name.isBlank() ? name : targetSectionName;
+        }
+
+        // 値を変えて使うための複製（ConfigStore#snapshot の Watch は書き換えない）
+        public Watch copy() {
+            return MAPPER.convertValue(this, Watch.class);
+        }
+    }
+
+    // 内訳の 1 区分に対する閾値
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BucketThreshold {
+        // 表示名（空なら value を使用）
+        public String name = "";
+        // "assignee" またはカスタムフィールドの GID
+        public String field = SectionBreakdown.ASSIGNEE;
+        // 担当者・選択肢の GID か名前（例: "P1"）。"none" で未割り当て・未設定
+        public String value = "";
+        public int threshold = 1;
+
+        // 状態（State.WatchState.buckets）のキー
+        public String key() {
+            return field + "=" + value;
+        }
+
+        public String label() {
+            return name != null && !name.isBlank() ? name : value;
+        }
+    }
+
+    // 監視が使う認証情報（未定義の名前なら null）。レート制限・API の URL の省略分はトップレベルの値で埋めた複製を返す
+    // credential が空なら "default" と同じ。credentials に "default" が無ければトップレベルの personalAccessToken 等を使う
+    public Credential credentialFor(Watch w) {
+        return credential(w.credential);
+    }
+
+    public Credential credential(String name) {
+        String n = name == null || name.isBlank() ? DEFAULT_CREDENTIAL : name.trim();
+        Credential resolved = new Credential();
+        Credential named = null;
+        if (credentials != null) {
+            for (Credential c : credentials) {
+                if (c != null && n.equals(c.name)) {
+                    named = c;
+                    break;
+                }
+            }
+        }
+        if (named == null && !DEFAULT_CREDENTIAL.equals(n)) return null;
+        if (named == null) {
+            resolved.personalAccessToken = personalAccessToken;
+        } else {
+            resolved.name = named.name;
+            resolved.personalAccessToken = named.personalAccessToken;
+        }
+        resolved.requestsPerMinute = named != null && named.requestsPerMinute > 0 ? named.requestsPerMinute : requestsPerMinute;
+        resolved.maxConcurrentRequests = named != null && named.maxConcurrentRequests > 0 ? named.maxConcurrentRequests : maxConcurrentRequests;
+        resolved.apiBaseUrl = named != null && named.apiBaseUrl != null && !named.apiBaseUrl.isBlank() ? named.apiBaseUrl : apiBaseUrl;
+        return resolved;
+    }
+
+    // トップレベルか名前付きのどちらかに PAT が設定されているか
+    public boolean hasAnyToken() {
+        if (personalAccessToken != null && !personalAccessToken.isBlank()) return true;
+        if (credentials != null) {
+            for (Credential c : credentials) {
+                if (c != null && c.hasToken()) return true;
+            }
+        }
+        return false;
+    }
+
+    // 監視として使える設定か（null の要素や、projectGid・targetSectionName が空のものは使わない）
+    public static boolean isUsableWatch(Watch w) {
+        return w != null && w.projectGid != null && !w.projectGid.isBlank()
+                && w.targetSectionName != null && !w.targetSectionName.isBlank();
+    }
+
+    // 実際に監視する一覧を返す（watches 未設定なら従来の単一設定から 1 件を組み立てる）。
+    // 使えない要素は除く（ConfigStore が公開する設定では除外済み。BatchCheck などが直接読み込んだ設定のためにここでも除く）
+    public List<Watch> effectiveWatches() {
+        if (watches != null && !watches.isEmpty()) {
+            for (Watch w : watches) {
+                if (!isUsableWatch(w)) return watches.stream().filter(Config::isUsableWatch).toList();
+            }
+            return watches;
+        }
+        if (projectGid == null || projectGid.isBlank() || targetSectionName == null || targetSectionName.isBlank()) {
+            return List.of();
+        }
+        Watch w = new Watch();
+        w.projectGid = projectGid;
+        w.targetSectionName = targetSectionName;
+        w.threshold = threshold;
+        w.pollingMinutes = pollingMinutes;
+        w.adaptivePolling = adaptivePolling;
+        w.minPollingMinutes = minPollingMinutes;
+        w.maxPollingMinutes = maxPollingMinutes;
+        w.cooldownMinutes = cooldownMinutes;
+        w.boardUrl = boardUrl;
+        return List.of(w);
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
 
     // 設定ファイルを読み込み。存在しない場合はデフォルト設定を書き出して返す
     public static Config load(Path path) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
         if (Files.exists(path)) {
             try (var in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-                return mapper.readValue(in, Config.class);
+                return MAPPER.readValue(in, Config.class);
             }
         }
         Config cfg = new Config();
@@ -46,8 +298,17 @@ public class Config {
     public static void save(Config cfg, Path path) throws IOException {
         Objects.requireNonNull(cfg);
         Files.createDirectories(path.getParent());
-        ObjectMapper mapper = new ObjectMapper();
-        var json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(cfg);
+        var json = MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(cfg);
         Files.writeString(path, json, StandardCharsets.UTF_8);
     }
+
+    // 設定の複製（編集用）
+    public static Config copyOf(Config cfg) {
+        return MAPPER.convertValue(cfg, Config.class);
+    }
+
+    // 2 つの設定の内容が同じか
+    public static boolean sameContent(Config a, Config b) {
+        return MAPPER.valueToTree(a).equals(MAPPER.valueToTree(b));
+    }
 }
@@ -0,0 +1,154 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+// 設定をメモリ上に保持し、config.json が変更されたときだけ読み直すホルダー。
+// - snapshot() は公開後に変更されない Config を返す（チェック処理はファイルを読まない）。
+//   公開するのは Config.copyOf の複製で、リストは変更不可にしてある。Config / Watch などのフィールドも書き換えないこと
+//   （値を変えて使う処理は Config.copyOf や Watch#copy の複製に対して行う）
+// - 編集は editableCopy() で得た複製に対して行い、save() で保存・公開する
+// - WatchService で config.json の変更を検知し、再読込してリスナーへ通知
+public class ConfigStore implements AutoCloseable {
+    // 書き込み途中のイベントをまとめるための待ち時間
+    private static final long RELOAD_DEBOUNCE_MILLIS = 200L;
+
+    private final Path path;
+    private volatile Config current;
+    private final List<Consumer<Config>> listeners = new CopyOnWriteArrayList<>();
+    private volatile WatchService watchService;
+
+    public ConfigStore(Path path) throws IOException {
+        this.path = path;
+        this.current = freeze(Config.load(path));
+    }
+
+    // 現在の設定（変更しないこと）
+    public Config snapshot() {
+        return current;
+    }
+
+    // 編集用の複製
+    public Config editableCopy() {
+        return Config.copyOf(current);
+    }
+
+    // 設定を保存し、すぐに公開する（ファイル変更の検知を待たない）
+    public void save(Config cfg) throws IOException {
+        Config frozen = freeze(cfg);
+        // ファイルには入力どおりに書く（使えない監視も消さない）
+        Config.save(cfg, path);
+        publish(frozen);
+    }
+
+    // 設定が変わったときに呼ばれるリスナーを登録
+    public void onChange(Consumer<Config> listener) {
+        listeners.add(listener);
+    }
+
+    // config.json の監視を開始する
+    public void startWatching() throws IOException {
+        WatchService ws = FileSystems.getDefault().newWatchService();
+        path.getParent().register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        watchService = ws;
+        Thread.ofVirtual().name("config-watcher").start(() -> watchLoop(ws));
+    }
+
+    @Override
+    public void close() throws IOException {
+        WatchService ws = watchService;
+        if (ws != null) ws.close();
+    }
+
+    private void watchLoop(WatchService ws) {
+        Path fileName = path.getFileName();
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean changed = false;
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (fileName.equals(ev.context())) changed = true;
+                }
+                key.reset();
+                if (changed) {
+                    Thread.sleep(RELOAD_DEBOUNCE_MILLIS);
+                    // 待っている間に届いた同じファイルのイベントは読み捨てる
+                    WatchKey more;
+                    while ((more = ws.poll()) != null) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 終了
+        }
+    }
+
+    private void reload() {
+        try {
+            Config loaded = Config.load(path);
+            // 自分で保存した直後など、内容が同じなら何もしない
+            if (Config.sameContent(loaded, current)) return;
+            System.out.println(Instant.now() + " config.json の変更を検知し、設定を再読込しました");
+            publish(freeze(loaded));
+        } catch (IOException e) {
+            // 編集途中などで読めない場合は現在の設定を維持
+            System.err.println(Instant.now() + " config.json の再読込に失敗（現在の設定を維持）: " + e.getMessage());
+        }
+    }
+
+    private void publish(Config cfg) {
+        current = cfg;
+        for (Consumer<Config> l : listeners) {
+            try {
+                l.accept(cfg);
+            } catch (Exception e) {
+                System.err.println(Instant.now() + " 設定変更の反映に失敗: " + e.getMessage());
+            }
+        }
+    }
+
+    // 公開する設定を作る。呼び出し元が持っている Config と共有しないよう複製し、リストを変更不可にする。
+    // 使えない監視（null・projectGid / targetSectionName が空）はログに残して除く
+    private static Config freeze(Config source) {
+        Config cfg = Config.copyOf(source);
+        List<Config.Watch> usable = new ArrayList<>();
+        if (cfg.watches != null) {
+            for (int i = 0; i < cfg.watches.size(); i++) {
+                Config.Watch w = cfg.watches.get(i);
+                if (Config.isUsableWatch(w)) {
+                    usable.add(w);
+                } else {
+                    System.err.println(Instant.now() + " watches[" + i + "] は projectGid または targetSectionName が空のため無視します");
+                }
+            }
+        }
+        cfg.watches = Collections.unmodifiableList(usable);
+        cfg.credentials = unmodifiable(cfg.credentials);
+        cfg.notificationBackends = unmodifiable(cfg.notificationBackends);
+        for (Config.Watch w : cfg.watches) {
+            w.breakdownFields = unmodifiable(w.breakdownFields);
+            w.bucketThresholds = unmodifiable(w.bucketThresholds);
+        }
+        return cfg;
+    }
+
+    // null の要素を含んでいてもよい（読み込んだ JSON のまま）
+    private static <T> List<T> unmodifiable(List<T> list) {
+        return list == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.asanawatcher;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// countMode=events の監視の、未完了タスクの GID 集合と Events API の同期トークン（SectionEventTracker が更新する）。
+// - GID は long で LongLongHashMap に持つ（値は使わない）。1 件 16 バイト・負荷率 1/2 以下
+// - state.json には入れず（セクションの大きさに比例して state.json の書き換えが重くなるため）、
+//   すべての監視の分を state.json と同じディレクトリの event-tasks.bin にバイナリで保存する。
+//   同期トークンも同じファイルに入れ、集合とトークンが食い違わないようにする
+public final class EventTaskIndex {
+    private static final int MAGIC = 0x41574556; // "AWEV"
+    private static final int VERSION = 1;
+    private static final long PRESENT = 1L;
+
+    private final LongLongHashMap gids;
+    // 同期トークンを取得したセクションの GID（GID が変わったら作り直す）と同期トークン（null なら未同期）
+    private String sectionGid;
+    private String syncToken;
+
+    public EventTaskIndex() {
+        this(64);
+    }
+
+    private EventTaskIndex(int expectedSize) {
+        this.gids = new LongLongHashMap(expectedSize);
+    }
+
+    // sectionGid について同期済みか（false なら全件走査で作り直す）
+    boolean isSyncedWith(String sectionGid) {
+        return syncToken != null && sectionGid.equals(this.sectionGid);
+    }
+
+    String syncToken() {
+        return syncToken;
+    }
+
+    void setSyncToken(String syncToken) {
+        this.syncToken = syncToken;
+    }
+
+    // 全件走査の前に集合を空にし、対象のセクションとトークンを差し替える
+    void reset(String sectionGid, String syncToken) {
+        gids.clear();
+        this.sectionGid = sectionGid;
+        this.syncToken = syncToken;
+    }
+
+    void add(String taskGid) {
+        gids.put(Long.parseLong(taskGid), PRESENT);
+    }
+
+    void remove(String taskGid) {
+        gids.remove(Long.parseLong(taskGid));
+    }
+
+    boolean contains(String taskGid) {
+        return gids.containsKey(Long.parseLong(taskGid));
+    }
+
+    public int size() {
+        return gids.size();
+    }
+
+    // event-tasks.bin を読み込む（キーは Config.Watch#key）。無い・壊れている場合は空から始める（次のチェックで全件走査）
+    public static Map<String, EventTaskIndex> loadAll(Path path) {
+        Map<String, EventTaskIndex> all = new LinkedHashMap<>();
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown format");
+            }
+            int watches = in.readInt();
+            for (int w = 0; w < watches; w++) {
+                String key = readString(in);
+                String sectionGid = readString(in);
+                String syncToken = readString(in);
+                int size = in.readInt();
+                if (size < 0) throw new IOException("bad size: " + size);
+                EventTaskIndex idx = new EventTaskIndex(size);
+                idx.sectionGid = sectionGid;
+                idx.syncToken = syncToken;
+                for (int i = 0; i < size; i++) {
+                    idx.gids.put(in.readLong(), PRESENT);
+                }
+                all.put(key, idx);
+            }
+        } catch (NoSuchFileException e) {
+            return all;
+        } catch (EOFException e) {
+            System.err.println(Instant.now() + " event-tasks.bin が途中で切れているため作り直します");
+            all.clear();
+        } catch (IOException e) {
+            System.err.println(Instant.now() + " event-tasks.bin を読めないため作り直します: " + e.getMessage());
+            all.clear();
+        }
+        return all;
+    }
+
+    // すべての集合を event-tasks.bin に保存する（State.writeAtomically: 一時ファイル → fsync → 置き換え）
+    public static void saveAll(Path path, Map<String, EventTaskIndex> all) throws IOException {
+        State.writeAtomically(path, toBytes(all));
+    }
+
+    // ヘッダ: magic(int) version(int) 監視数(int)
+    // 監視ごと: キー・セクション GID・同期トークン（それぞれ長さ(int) + UTF-8。null は長さ -1） 件数(int) + 件数 x GID(long)
+    static byte[] toBytes(Map<String, EventTaskIndex> all) {
+        long total = 12;
+        for (Map.Entry<String, EventTaskIndex> e : all.entrySet()) {
+            EventTaskIndex idx = e.getValue();
+            total += 16 + utf8Length(e.getKey()) + utf8Length(idx.sectionGid) + utf8Length(idx.syncToken) + 8L * idx.gids.size();
+        }
+        if (total > Integer.MAX_VALUE) throw new IllegalStateException("event task index too large: " + total);
+        ByteBuffer buf = ByteBuffer.allocate((int) total);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(all.size());
+        for (Map.Entry<String, EventTaskIndex> e : all.entrySet()) {
+            EventTaskIndex idx = e.getValue();
+            putString(buf, e.getKey());
+            putString(buf, idx.sectionGid);
+            putString(buf, idx.syncToken);
+            buf.putInt(idx.gids.size());
+            idx.gids.forEach((gid, v) -> buf.putLong(gid));
+        }
+        return buf.array();
+    }
+
+    private static int utf8Length(String s) {
+        return s == null ? 0 : s.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buf.putInt(bytes.length).put(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) return null;
+        if (length < 0 || length > 64 * 1024) throw new IOException("bad string length: " + length);
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
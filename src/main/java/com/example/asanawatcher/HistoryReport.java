@@ -0,0 +1,157 @@
+package com.example.asanawatcher;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// --history: history.bin の直近の記録をセクションごとに集計し、JSON / CSV で出力する（常駐中でも実行できる。ファイルは読むだけ）
+//
+// 例: java -jar asana-watcher.jar --history --hours=168 --format=csv
+// - 集計するのは [現在 - hours, 現在) の記録（既定 24 時間）。--section=<GID> で 1 セクションに絞る
+// - セクションごとに記録数、件数の最小/最大/中央値/95 パーセンタイル、取得時間の中央値/95 パーセンタイル（ミリ秒）を出す
+// - 終了コード: 0 = 出力した / 2 = 引数の誤り / 3 = 履歴ファイルの読み込み・結果の書き出しに失敗
+final class HistoryReport {
+    private static final String USAGE = """
+            使い方: --history [--format=json|csv] [--hours=N] [--section=<セクション GID>]
+              history.bin の直近 N 時間（既定 24）の記録を、セクションごとに集計して出力します
+              終了コード: 0 出力した / 2 引数の誤り / 3 読み込み・書き出しに失敗""";
+
+    // 1 セクション分の集計
+    record Row(long sectionGid, HistoryStore.Summary summary) {}
+
+    private HistoryReport() {}
+
+    // 引数を解釈して集計し、結果を out へ書き出して終了コードを返す
+    static int run(String[] args, Path historyPath, PrintStream out, PrintStream err) {
+        String format = "json";
+        long hours = 24;
+        long sectionGid = 0;
+        for (String a : args) {
+            if (a.equals("--history")) continue;
+            try {
+                if (a.startsWith("--format=")) format = a.substring("--format=".length()).toLowerCase();
+                else if (a.startsWith("--hours=")) hours = Long.parseLong(a.substring("--hours=".length()));
+                else if (a.startsWith("--section=")) sectionGid = Long.parseLong(a.substring("--section=".length()));
+                else if (a.equals("--help") || a.equals("-h")) {
+                    err.println(USAGE);
+                    return BatchCheck.EXIT_USAGE;
+                } else {
+                    err.println("不明な引数: " + a);
+                    err.println(USAGE);
+                    return BatchCheck.EXIT_USAGE;
+                }
+            } catch (NumberFormatException e) {
+                err.println("数値ではありません: " + a);
+                return BatchCheck.EXIT_USAGE;
+            }
+        }
+        if (!format.equals("json") && !format.equals("csv")) {
+            err.println("--format は json か csv です: " + format);
+            return BatchCheck.EXIT_USAGE;
+        }
+        if (hours <= 0) {
+            err.println("--hours は 1 以上です: " + hours);
+            return BatchCheck.EXIT_USAGE;
+        }
+        if (Files.notExists(historyPath)) {
+            err.println("履歴ファイルがありません（historyMaxRecords が 0 か、まだチェックしていません）: " + historyPath);
+            return BatchCheck.EXIT_FETCH_FAILED;
+        }
+
+        long toMillis = System.currentTimeMillis();
+        long fromMillis = toMillis - TimeUnit.HOURS.toMillis(hours);
+        List<Row> rows;
+        try (HistoryStore store = HistoryStore.openReadOnly(historyPath)) {
+            rows = summarize(store, sectionGid, fromMillis, toMillis);
+        } catch (IOException e) {
+            err.println("履歴ファイルを読めません: " + e.getMessage());
+            return BatchCheck.EXIT_FETCH_FAILED;
+        }
+        try {
+            if (format.equals("csv")) writeCsv(rows, out);
+            else writeJson(rows, fromMillis, toMillis, out);
+        } catch (IOException e) {
+            err.println("結果を書き出せません: " + e.getMessage());
+            return BatchCheck.EXIT_FETCH_FAILED;
+        }
+        out.flush();
+        // PrintStream は書き込みの失敗を例外にしないため、ここで確かめる
+        if (out.checkError()) {
+            err.println("結果を書き出せません");
+            return BatchCheck.EXIT_FETCH_FAILED;
+        }
+        return BatchCheck.EXIT_OK;
+    }
+
+    // 範囲内に記録のあるセクションを最初に現れた順に並べ、それぞれを集計する。sectionGid=0 なら全セクション
+    static List<Row> summarize(HistoryStore store, long sectionGid, long fromMillis, long toMillis) {
+        LongLongHashMap seen = new LongLongHashMap();
+        long[][] order = {new long[16]};
+        int[] n = {0};
+        store.forEach(sectionGid, fromMillis, toMillis, (ts, gid, count, latency) -> {
+            if (seen.containsKey(gid)) return;
+            seen.put(gid, 1L);
+            if (n[0] == order[0].length) order[0] = Arrays.copyOf(order[0], n[0] * 2);
+            order[0][n[0]++] = gid;
+        });
+        List<Row> rows = new ArrayList<>(n[0]);
+        for (int i = 0; i < n[0]; i++) {
+            rows.add(new Row(order[0][i], store.summarize(order[0][i], fromMillis, toMillis)));
+        }
+        return rows;
+    }
+
+    static void writeJson(List<Row> rows, long fromMillis, long toMillis, PrintStream out) throws IOException {
+        try (JsonGenerator g = new JsonFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            g.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            g.writeStartObject();
+            g.writeStringField("from", Instant.ofEpochMilli(fromMillis).toString());
+            g.writeStringField("to", Instant.ofEpochMilli(toMillis).toString());
+            g.writeArrayFieldStart("sections");
+            for (Row r : rows) {
+                HistoryStore.Summary s = r.summary();
+                g.writeStartObject();
+                g.writeStringField("section", Long.toString(r.sectionGid()));
+                g.writeNumberField("samples", s.samples());
+                g.writeNumberField("min", s.minCount());
+                g.writeNumberField("max", s.maxCount());
+                g.writeNumberField("p50", s.p50Count());
+                g.writeNumberField("p95", s.p95Count());
+                g.writeNumberField("latencyP50Millis", s.p50LatencyMillis());
+                g.writeNumberField("latencyP95Millis", s.p95LatencyMillis());
+                g.writeEndObject();
+            }
+            g.writeEndArray();
+            g.writeEndObject();
+        }
+        out.println();
+    }
+
+    static void writeCsv(List<Row> rows, PrintStream out) {
+        out.println("section,samples,min,max,p50,p95,latency_p50_ms,latency_p95_ms");
+        StringBuilder sb = new StringBuilder();
+        for (Row r : rows) {
+            HistoryStore.Summary s = r.summary();
+            sb.setLength(0);
+            sb.append(r.sectionGid()).append(',')
+                    .append(s.samples()).append(',')
+                    .append(s.minCount()).append(',')
+                    .append(s.maxCount()).append(',')
+                    .append(s.p50Count()).append(',')
+                    .append(s.p95Count()).append(',')
+                    .append(s.p50LatencyMillis()).append(',')
+                    .append(s.p95LatencyMillis());
+            out.println(sb);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+
+// セクションごとの未完了数の履歴（時系列）を保存する追記専用ストア。
+// - 固定長のリングバッファをファイル全体ごとメモリマップし、古い記録から上書きする
+// - 1 件 = (時刻ミリ秒 long, セクション GID long, 件数 int, 取得時間ミリ秒 int) の 24 バイト
+// - 追記はマップ済みメモリへの書き込みのみ（オブジェクト生成・システムコールなし）。ディスクへの反映は OS に任せ、close で force する
+// - 参照は範囲走査のみで、該当する値だけをヒープに取り出す
+public class HistoryStore implements AutoCloseable {
+    private static final int MAGIC = 0x41574853; // "AWHS"
+    private static final int VERSION = 1;
+    // ヘッダ: magic(int) version(int) capacity(long) written(long)
+    private static final int HEADER_BYTES = 32;
+    private static final int OFF_CAPACITY = 8;
+    private static final int OFF_WRITTEN = 16;
+    static final int RECORD_BYTES = 24;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buf;
+    private final long capacity;
+    // これまでに追記した総件数（capacity を超えると古いものから上書き）
+    private long written;
+
+    // 1 件の記録を受け取るコールバック（ボクシングを避けるためプリミティブ引数）
+    @FunctionalInterface
+    public interface SampleVisitor {
+        void visit(long timestampMillis, long sectionGid, int count, int latencyMillis);
+    }
+
+    // 範囲内の集計結果（samples=0 のときその他の値は 0）
+    public record Summary(int samples, int minCount, int maxCount, int p50Count, int p95Count, int p50LatencyMillis, int p95LatencyMillis) {}
+
+    // 履歴ファイルを開く（なければ作成）。容量が異なる既存ファイルや壊れたファイルは作り直す
+    public static HistoryStore open(Path path, int capacity) throws IOException {
+        Files.createDirectories(path.getParent());
+        long size = HEADER_BYTES + (long) capacity * RECORD_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("historyMaxRecords が大きすぎます: " + capacity);
+        }
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long existing = ch.size();
+            boolean fresh = existing != size;
+            // マップ中のファイルは（Windows では）切り詰められないため先に縮める
+            if (existing > size) ch.truncate(size);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (!fresh && (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || buf.getLong(OFF_CAPACITY) != capacity)) {
+                fresh = true;
+            }
+            if (fresh) {
+                if (existing > 0) {
+                    System.out.println(Instant.now() + " 履歴ファイルを作り直します: " + path);
+                }
+                buf.putInt(0, MAGIC);
+                buf.putInt(4, VERSION);
+                buf.putLong(OFF_CAPACITY, capacity);
+                buf.putLong(OFF_WRITTEN, 0L);
+            }
+            return new HistoryStore(ch, buf, capacity);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    // 既存の履歴ファイルを読み取り専用で開く（--history。常駐中のプロセスが書き込んでいてもよい。容量はヘッダから読む）
+    public static HistoryStore openReadOnly(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = ch.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) throw new IOException("履歴ファイルの形式が正しくありません: " + path);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            long capacity = buf.getLong(OFF_CAPACITY);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION || capacity <= 0 || HEADER_BYTES + capacity * RECORD_BYTES != size) {
+                throw new IOException("履歴ファイルの形式が正しくありません: " + path);
+            }
+            return new HistoryStore(ch, buf, capacity);
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private HistoryStore(FileChannel channel, MappedByteBuffer buf, long capacity) {
+        this.channel = channel;
+        this.buf = buf;
+        this.capacity = capacity;
+        this.written = buf.getLong(OFF_WRITTEN);
+    }
+
+    // 1 件追記する。記録本体を書いてから件数を進めるため、途中で終了しても中途半端な記録は読まれない
+    public synchronized void append(long timestampMillis, long sectionGid, int count, int latencyMillis) {
+        int pos = position(written % capacity);
+        buf.putLong(pos, timestampMillis);
+        buf.putLong(pos + 8, sectionGid);
+        buf.putInt(pos + 16, count);
+        buf.putInt(pos + 20, latencyMillis);
+        written++;
+        buf.putLong(OFF_WRITTEN, written);
+    }
+
+    // 保持している件数
+    public synchronized long size() {
+        return Math.min(written, capacity);
+    }
+
+    // [fromMillis, toMillis) の記録を古い順に visitor へ渡す。sectionGid=0 なら全セクション
+    public synchronized void forEach(long sectionGid, long fromMillis, long toMillis, SampleVisitor visitor) {
+        long n = Math.min(written, capacity);
+        long start = written - n;
+        for (long i = start; i < written; i++) {
+            int pos = position(i % capacity);
+            long ts = buf.getLong(pos);
+            if (ts < fromMillis || ts >= toMillis) continue;
+            long gid = buf.getLong(pos + 8);
+            if (sectionGid != 0 && gid != sectionGid) continue;
+            visitor.visit(ts, gid, buf.getInt(pos + 16), buf.getInt(pos + 20));
+        }
+    }
+
+    // [fromMillis, toMillis) のセクションの件数の最小/最大と、件数・取得時間のパーセンタイル
+    public Summary summarize(long sectionGid, long fromMillis, long toMillis) {
+        int[][] cols = {new int[64], new int[64]};
+        int[] n = {0};
+        forEach(sectionGid, fromMillis, toMillis, (ts, gid, count, latency) -> {
+            if (n[0] == cols[0].length) {
+                cols[0] = Arrays.copyOf(cols[0], n[0] * 2);
+                cols[1] = Arrays.copyOf(cols[1], n[0] * 2);
+            }
+            cols[0][n[0]] = count;
+            cols[1][n[0]] = latency;
+            n[0]++;
+        });
+        if (n[0] == 0) return new Summary(0, 0, 0, 0, 0, 0, 0);
+        int[] counts = Arrays.copyOf(cols[0], n[0]);
+        int[] latencies = Arrays.copyOf(cols[1], n[0]);
+        Arrays.sort(counts);
+        Arrays.sort(latencies);
+        return new Summary(n[0], counts[0], counts[n[0] - 1],
+                percentile(counts, 0.50), percentile(counts, 0.95),
+                percentile(latencies, 0.50), percentile(latencies, 0.95));
+    }
+
+    // ソート済み配列の最近順位法によるパーセンタイル
+    static int percentile(int[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        // 読み取り専用でマップした場合は何もしない
+        buf.force();
+        channel.close();
+    }
+
+    private static int position(long slot) {
+        return HEADER_BYTES + (int) slot * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.asanawatcher;
+
+import java.time.Instant;
+
+// ログ（標準出力）へ書くだけの通知。画面のない環境や、他のバックエンドがすべて使えない場合の最後の受け皿
+public class LogNotificationBackend implements NotificationBackend {
+    public static final String NAME = "log";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public void show(String title, String message) {
+        System.out.println(Instant.now() + " [通知] " + title + " - " + message.replace('\n', ' '));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+// ログファイルの追記分だけを読む tail。
+// - 読み終えた位置を保持し、前回以降に増えたバイトだけを UTF-8 として返す（文字の途中で切れた分は次回に持ち越す）
+// - ファイルが .1 へローテーションされた場合は、旧ファイルの残りを読み切ってから新しいファイルの先頭へ切り替える
+// - close 後に read すると、保持していた位置から再開する
+final class LogTailer implements AutoCloseable {
+    private static final int CHUNK = 64 * 1024;
+
+    private final Path file;
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK);
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK);
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private FileChannel channel;
+    private Object fileKey;
+    private long position = -1; // -1: 未読（初回は末尾 initialBytes だけ読む）
+
+    LogTailer(Path file) {
+        this.file = file;
+    }
+
+    // 前回以降に追記された文字列を返す（なければ空文字）。初回は末尾 initialBytes バイト分から（行頭に揃える）
+    // rotated には、ローテーションを検出したときに true が入る
+    String read(long initialBytes, boolean[] rotated) throws IOException {
+        rotated[0] = false;
+        if (channel == null && !open()) return "";
+        StringBuilder out = new StringBuilder();
+        if (position < 0) {
+            long size = channel.size();
+            position = Math.max(0, size - initialBytes);
+            channel.position(position);
+            drain(out);
+            // 途中から読み始めた場合は最初の改行までを捨てる
+            if (position > 0) {
+                int nl = out.indexOf("\n");
+                out.delete(0, nl < 0 ? out.length() : nl + 1);
+            }
+            position = channel.position();
+            return out.toString();
+        }
+        drain(out);
+        position = channel.position();
+        if (isRotated()) {
+            rotated[0] = true;
+            closeChannel();
+            position = 0;
+            decoder.reset();
+            bytes.clear();
+            if (open()) {
+                drain(out);
+                position = channel.position();
+            }
+        }
+        return out.toString();
+    }
+
+    // ファイルハンドルを解放する（読んだ位置は保持）
+    @Override
+    public void close() {
+        closeChannel();
+    }
+
+    private boolean open() throws IOException {
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+        fileKey = Files.readAttributes(file, BasicFileAttributes.class).fileKey();
+        if (position > 0) {
+            // 閉じている間にローテーションされていたら先頭から
+            if (channel.size() < position) {
+                position = 0;
+                decoder.reset();
+                bytes.clear();
+            }
+            channel.position(position);
+        }
+        return true;
+    }
+
+    // 開いているファイルとパスの指す実体が別物になったか（fileKey が取れない Windows ではサイズの縮小で判定）
+    private boolean isRotated() throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return false; // 新しいファイルがまだ作られていない
+        }
+        if (fileKey != null && attrs.fileKey() != null) {
+            return !Objects.equals(fileKey, attrs.fileKey());
+        }
+        return attrs.size() < position;
+    }
+
+    private void drain(StringBuilder out) throws IOException {
+        while (channel.read(bytes) > 0) {
+            bytes.flip();
+            decoder.decode(bytes, chars, false);
+            bytes.compact();
+            chars.flip();
+            out.append(chars);
+            chars.clear();
+        }
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try { channel.close(); } catch (IOException ignored) {}
+            channel = null;
+        }
+    }
+}
@@ -1,25 +1,36 @@
 package com.example.asanawatcher;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Document;
+import javax.swing.text.Element;
 import java.awt.*;
-import java.awt.event.WindowAdapter;
-import java.awt.event.WindowEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
 
 // ログファイルの内容を簡易表示するダイアログ。
-// 一定間隔で末尾を自動更新し、手動更新/自動更新の停止・再開も可能。
+// 一定間隔で追記分だけを読み込んで末尾に追加し、手動更新/自動更新の停止・再開も可能。
+// 非表示の間はポーリングを止め、ファイルも閉じる。
 public class LogViewerDialog extends JDialog {
+    // 表示しておく最大行数（超えた分は先頭から削除）
+    private static final int MAX_LINES = 1000;
+    // 初回表示で読む末尾のバイト数
+    private static final long INITIAL_BYTES = 256 * 1024;
+
     private final JTextArea textArea = new JTextArea();
     private final Path logFile;
+    private final LogTailer tailer;
     private final Timer timer;
+    private boolean paused = false;
+    // 「ログファイルなし」の案内を表示中か
+    private boolean placeholder = false;
 
     public LogViewerDialog(Window owner, Path logFile) {
         super(owner, "ログビューア", ModalityType.MODELESS);
         this.logFile = logFile;
+        this.tailer = new LogTailer(logFile);
         setDefaultCloseOperation(HIDE_ON_CLOSE);
         setLayout(new BorderLayout(4,4));
 
@@ -34,16 +45,16 @@ public class LogViewerDialog extends JDialog {
         controls.add(pause);
         add(controls, BorderLayout.SOUTH);
 
-        // 「更新」クリックで即時再読込
-        refresh.addActionListener(e -> loadLogTail());
+        // 「更新」クリックで即時に追記分を読み込み
+        refresh.addActionListener(e -> loadNewLines());
 
-        timer = new Timer(2000, e -> loadLogTail());
+        timer = new Timer(2000, e -> loadNewLines());
         timer.setRepeats(true);
-        timer.start();
 
         // 自動更新の停止/再開トグル
         pause.addActionListener(e -> {
-            if (timer.isRunning()) {
+            paused = !paused;
+            if (paused) {
                 timer.stop();
                 pause.setText("自動更新 再開");
             } else {
@@ -52,8 +63,16 @@ public class LogViewerDialog extends JDialog {
             }
         });
 
-        addWindowListener(new WindowAdapter() {
-            @Override public void windowOpened(WindowEvent e) { loadLogTail(); }
+        // 表示中だけポーリングする（閉じる＝非表示でタイマー停止・ファイルを閉じる）
+        addComponentListener(new ComponentAdapter() {
+            @Override public void componentShown(ComponentEvent e) {
+                loadNewLines();
+                if (!paused) timer.start();
+            }
+            @Override public void componentHidden(ComponentEvent e) {
+                timer.stop();
+                tailer.close();
+            }
         });
 
         setPreferredSize(new Dimension(720, 420));
@@ -61,22 +80,38 @@ public class LogViewerDialog extends JDialog {
         setLocationRelativeTo(owner);
     }
 
-    // ログファイルの末尾（最大1000行）を読み込み、テキストエリアに表示
-    private void loadLogTail() {
+    // 前回以降にログファイルへ追記された分をテキストエリアの末尾に追加し、最大行数を超えた先頭を削除
+    private void loadNewLines() {
+        Document doc = textArea.getDocument();
         try {
-            if (!Files.exists(logFile)) {
-                textArea.setText("(ログファイルなし)\n" + logFile);
+            boolean[] rotated = new boolean[1];
+            String added = tailer.read(INITIAL_BYTES, rotated);
+            if (rotated[0]) added = "--- ログがローテーションされました ---\n" + added;
+            if (added.isEmpty()) {
+                if (doc.getLength() == 0) {
+                    textArea.setText("(ログファイルなし)\n" + logFile);
+                    placeholder = true;
+                }
                 return;
             }
-            List<String> all = Files.readAllLines(logFile, StandardCharsets.UTF_8);
-            int n = all.size();
-            int from = Math.max(0, n - 1000); // show last 1000 lines
-            StringBuilder sb = new StringBuilder();
-            for (int i = from; i < n; i++) sb.append(all.get(i)).append('\n');
-            textArea.setText(sb.toString());
-            textArea.setCaretPosition(textArea.getDocument().getLength());
-        } catch (IOException ex) {
-            textArea.setText("ログ読み込みに失敗: " + ex.getMessage());
+            if (placeholder) {
+                doc.remove(0, doc.getLength());
+                placeholder = false;
+            }
+            doc.insertString(doc.getLength(), added, null);
+            trimHead(doc);
+            textArea.setCaretPosition(doc.getLength());
+        } catch (IOException | BadLocationException ex) {
+            textArea.append("ログ読み込みに失敗: " + ex.getMessage() + "\n");
+        }
+    }
+
+    private static void trimHead(Document doc) throws BadLocationException {
+        Element root = doc.getDefaultRootElement();
+        // 末尾の改行の後ろにも空の行要素があるため、その分を加える
+        int excess = root.getElementCount() - (MAX_LINES + 1);
+        if (excess > 0) {
+            doc.remove(0, root.getElement(excess).getStartOffset());
         }
     }
 }
@@ -1,8 +1,5 @@
 package com.example.asanawatcher;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -12,8 +9,15 @@ import java.nio.file.Path;
  * 簡易ファイルロガー。
  * System.out / System.err をアプリ用データディレクトリ配下のログファイルへリダイレクトする。
  * 依存を増やさず、最小限の仕組みでログを永続化する目的。
+ * 書き込みは AsyncLogStream が専用スレッドでまとめて行い、実行中もサイズでローテーションする。
  */
 public final class LoggerUtil {
+    // ローテーションするサイズ（約 1MB）と、残す圧縮済み世代数（.1.gz 〜 .5.gz）
+    static final long MAX_LOG_BYTES = 1_000_000;
+    static final int LOG_GENERATIONS = 5;
+
+    private static volatile AsyncLogStream stream;
+
     private LoggerUtil() {}
 
     public static void initLogging(Path appDir) {
@@ -21,16 +25,16 @@ public final class LoggerUtil {
             // アプリ用ディレクトリを作成
             Files.createDirectories(appDir);
             Path logFile = getLogFile(appDir);
-            // Simple size-based rotation (~1MB)
-            // おおよそ 1MB 超で .1 へローテーション
-            tryRotate(logFile, 1_000_000);
-
-            FileOutputStream fos = new FileOutputStream(logFile.toFile(), true);
-            PrintStream fileOut = new PrintStream(fos, true, StandardCharsets.UTF_8);
+            // おおよそ 1MB 超で .1.gz へローテーション（起動時・実行中とも）
+            AsyncLogStream s = new AsyncLogStream(logFile, MAX_LOG_BYTES, LOG_GENERATIONS, System.err);
+            PrintStream fileOut = new PrintStream(s, false, StandardCharsets.UTF_8);
             // Redirect both out and err to the same file
             // 標準出力/標準エラーを同一ファイルへ
             System.setOut(fileOut);
             System.setErr(fileOut);
+            stream = s;
+            // 終了時に未書き込みの行を書き出す
+            Runtime.getRuntime().addShutdownHook(new Thread(LoggerUtil::flush, "log-flush"));
             System.out.println("=== AsanaWatcher started ===");
         } catch (Exception e) {
             // If logging init fails, keep default System.out/err
@@ -43,14 +47,14 @@ public final class LoggerUtil {
         return appDir.resolve("asana-watcher.log");
     }
 
-    private static void tryRotate(Path file, long maxBytes) throws IOException {
-        if (Files.exists(file) && Files.size(file) > maxBytes) {
-            Path backup = file.resolveSibling(file.getFileName().toString() + ".1");
-            try {
-                Files.deleteIfExists(backup);
-            } catch (IOException ignored) {}
-            // 既存ログを .1 にリネームしてローテーション
-            Files.move(file, backup);
-        }
+    // ログに出す例外のメッセージ（ConnectException などメッセージの無い例外はクラス名）
+    public static String errorMessage(Exception e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    // 積まれているログを書き出す。以後の出力は呼び出し元スレッドで直接書く（終了処理用）
+    public static void flush() {
+        AsyncLogStream s = stream;
+        if (s != null) s.shutdown();
     }
 }
@@ -0,0 +1,112 @@
+package com.example.asanawatcher;
+
+import java.util.Arrays;
+
+// long -> int のオープンアドレス法（線形探索）によるハッシュマップ。
+// セクション GID（数値文字列）をボクシングせずにキーとして集計するために使う。値の既定は 0。
+public final class LongIntHashMap {
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    // キー 0 は空きスロットの印に使うため別に保持する
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public LongIntHashMap() {
+        this(64);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        int cap = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[cap];
+        values = new int[cap];
+    }
+
+    public int get(long key) {
+        if (key == EMPTY) return hasZeroKey ? zeroValue : 0;
+        int i = indexOf(key);
+        return keys[i] == key ? values[i] : 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) return hasZeroKey;
+        return keys[indexOf(key)] == key;
+    }
+
+    // key の値に delta を加算する（存在しなければ 0 から）
+    public void add(long key, int delta) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue += delta;
+            return;
+        }
+        int i = indexOf(key);
+        if (keys[i] == key) {
+            values[i] += delta;
+            return;
+        }
+        keys[i] = key;
+        values[i] = delta;
+        if (++size * 2 > keys.length) rehash();
+    }
+
+    // キーと値の組を受け取る処理（ボクシングしない）
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, int value);
+    }
+
+    // すべてのキーと値を順不同で渡す
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) action.accept(EMPTY, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) action.accept(keys[i], values[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0;
+    }
+
+    // key が入っているスロット、なければ挿入先の空きスロットを返す
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = indexOf(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
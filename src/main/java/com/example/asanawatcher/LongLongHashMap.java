@@ -0,0 +1,182 @@
+package com.example.asanawatcher;
+
+import java.util.Arrays;
+
+// long -> long のオープンアドレス法（線形探索）によるハッシュマップ。
+// タスク GID ごとの時刻などをボクシングせずに保持するために使う。値の既定は 0。
+// 削除は後方シフト（墓標を残さない）なので、追加・削除を繰り返しても探索が長くならない
+public final class LongLongHashMap {
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+    // キー 0 は空きスロットの印に使うため別に保持する
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    public LongLongHashMap() {
+        this(64);
+    }
+
+    public LongLongHashMap(int expectedSize) {
+        int cap = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[cap];
+        values = new long[cap];
+    }
+
+    public long get(long key) {
+        if (key == EMPTY) return hasZeroKey ? zeroValue : 0L;
+        int i = indexOf(key);
+        return keys[i] == key ? values[i] : 0L;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == EMPTY) return hasZeroKey;
+        return keys[indexOf(key)] == key;
+    }
+
+    public void put(long key, long value) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int i = indexOf(key);
+        if (keys[i] == key) {
+            values[i] = value;
+            return;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) rehash();
+    }
+
+    // key を削除する。削除したら true
+    public boolean remove(long key) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) return false;
+            hasZeroKey = false;
+            zeroValue = 0L;
+            size--;
+            return true;
+        }
+        int i = indexOf(key);
+        if (keys[i] != key) return false;
+        deleteSlot(i);
+        size--;
+        return true;
+    }
+
+    // キーと値の組を受け取る処理（ボクシングしない）
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    @FunctionalInterface
+    public interface EntryPredicate {
+        boolean test(long key, long value);
+    }
+
+    // すべてのキーと値を順不同で渡す
+    public void forEach(EntryConsumer action) {
+        if (hasZeroKey) action.accept(EMPTY, zeroValue);
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) action.accept(keys[i], values[i]);
+        }
+    }
+
+    // filter が true を返したエントリをその場で削除し、削除した件数を返す（配列は作り直さない）
+    public int removeIf(EntryPredicate filter) {
+        int removed = 0;
+        if (hasZeroKey && filter.test(EMPTY, zeroValue)) {
+            hasZeroKey = false;
+            zeroValue = 0L;
+            size--;
+            removed++;
+        }
+        int mask = keys.length - 1;
+        // 空きスロットの次から 1 周する。クラスタが走査の始点をまたがないため、
+        // 削除で詰めてくるエントリは常に未走査の位置から来る（同じエントリを 2 度見ない・見落とさない）
+        int start = 0;
+        while (keys[start] != EMPTY) start++;
+        int i = (start + 1) & mask;
+        for (int visited = 1; visited < keys.length; ) {
+            if (keys[i] != EMPTY && filter.test(keys[i], values[i])) {
+                deleteSlot(i);
+                size--;
+                removed++;
+                // i には後ろのエントリが詰められている可能性があるので、進まずにもう一度見る
+                continue;
+            }
+            i = (i + 1) & mask;
+            visited++;
+        }
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        Arrays.fill(values, 0L);
+        size = 0;
+        hasZeroKey = false;
+        zeroValue = 0L;
+    }
+
+    // key が入っているスロット、なければ挿入先の空きスロットを返す
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (keys[i] != EMPTY && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    // gap のエントリを消し、同じクラスタの後ろのエントリのうち本来の位置が gap 以前のものを詰める
+    private void deleteSlot(int gap) {
+        int mask = keys.length - 1;
+        int i = gap;
+        while (true) {
+            i = (i + 1) & mask;
+            long k = keys[i];
+            if (k == EMPTY) break;
+            int home = mix(k) & mask;
+            // home が (gap, i] の範囲（循環）に無ければ gap へ移しても探索で見つかる
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = k;
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = EMPTY;
+        values[gap] = 0L;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new long[oldValues.length * 2];
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != EMPTY) {
+                int i = indexOf(oldKeys[j]);
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
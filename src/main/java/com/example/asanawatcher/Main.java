@@ -1,15 +1,32 @@
 package com.example.asanawatcher;
 
-import java.awt.*;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
@@ -20,14 +37,52 @@ public class Main {
     private static ScheduledExecutorService scheduler;
     private static volatile ScheduledFuture<?> scheduledTask;
 
+    // 設定（config.json の変更時のみ再読込）と内部状態（起動時に 1 回だけ読み込み、RUN_LOCK で保護）
+    private static ConfigStore configStore;
+    private static State state;
+    private static StatePersister statePersister;
+    // 通知キュー（表示は専用スレッドで行い、チェック処理を待たせない）
+    private static NotificationQueue notifications;
+    // --headless で起動したか（通知は GUI を使わない表示先のみ）
+    private static boolean headless;
+    // 通知バックエンドの組み立ては重い（SnoreToast の探索・AUMID 登録）ため、設定が変わるまで使い回す
+    private static Notifier cachedNotifier;
+    private static Config cachedNotifierConfig;
+    // 件数の履歴（無効時は null）
+    private static volatile HistoryStore history;
+    // 滞留時間を監視する監視ごとの、タスクを最初に見た時刻の索引（キーは Config.Watch#key。RUN_LOCK で保護）
+    private static Map<String, TaskAgeIndex> taskAges = new LinkedHashMap<>();
+    private static Path taskAgePath;
+    // countMode=events の監視ごとの、未完了タスクの GID 集合と同期トークン（キーは Config.Watch#key。RUN_LOCK で保護）
+    private static Map<String, EventTaskIndex> eventTasks = new LinkedHashMap<>();
+    private static Path eventTasksPath;
+    // Asana API に接続できないか（offlineCheckSeconds ごとに NetworkProbe で確認。切断中はチェックしない）
+    private static volatile boolean offline;
+
     public static void main(String[] args) throws Exception {
+        // --once: 指定セクションを 1 回だけ数えて標準出力へ書き、終了コードで結果を返す（ログ・トレイ・スケジューラは使わない）
+        if (List.of(args).contains("--once")) {
+            PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8);
+            System.exit(BatchCheck.run(args, getAppDataDir().resolve("config.json"), out, System.err));
+        }
+        // --history: history.bin の直近の記録をセクションごとに集計して標準出力へ書く（常駐中のプロセスとは別に実行できる）
+        if (List.of(args).contains("--history")) {
+            PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.UTF_8);
+            System.exit(HistoryReport.run(args, getAppDataDir().resolve("history.bin"), out, System.err));
+        }
+        // --headless: トレイ・ダイアログを使わないデーモンとして動かす（AWT/Swing を一切読み込まない）
+        headless = List.of(args).contains("--headless");
+        // --exit-after-first-check: 初回チェックを終えたら終了する（起動時間の計測・AppCDS アーカイブの作成用）
+        boolean exitAfterFirstCheck = List.of(args).contains("--exit-after-first-check");
+        if (headless) {
+            System.setProperty("java.awt.headless", "true");
+        }
         // アプリ用ディレクトリ（Windows: %APPDATA%/AsanaWatcher, それ以外: ~/.asana-watcher）
         Path baseDir = getAppDataDir();
         // initialize simple file logging early so packaged app without console still records logs
         // 早期にファイルロギングを有効化（パッケージ配布でもログが残るように）
         LoggerUtil.initLogging(baseDir);
         Path configPath = baseDir.resolve("config.json");
-        Path statePath = baseDir.resolve("state.json");
 
         boolean firstRun = Files.notExists(configPath);
 
@@ -38,110 +93,719 @@ public class Main {
             return t;
         });
 
-        // 設定と内部状態をロード（なければ初期化）
-        Config config = Config.load(configPath);
-        State state = State.load(statePath);
+        // 設定と内部状態をロード（なければ初期化）。以後はメモリ上の値を使う
+        initCore(baseDir);
+        Config config = configStore.snapshot();
+        // 初回チェックはトレイや設定ダイアログ（AWT/Swing の読み込み）を待たずにチェック用スレッドで始める
+        Future<?> firstCheck = scheduler.submit(Main::runFirstCheck);
+        if (config.offlineCheckSeconds > 0) {
+            startNetworkMonitor(config.offlineCheckSeconds);
+        }
 
-        if (config.personalAccessToken == null || config.personalAccessToken.isBlank()) {
+        if (!config.hasAnyToken()) {
             System.out.println("config.json に Personal Access Token を設定してください。");
         }
 
-        // トレイアプリ（メニュー：今すぐチェック/設定/ログ/テスト通知/終了）のインストール
-        TrayApp trayApp = new TrayApp(
-                scheduler,
-                () -> runCheck(configPath, statePath),
-                () -> openSettings(configPath),
-                () -> openLogs(baseDir),
-                () -> testNotify(baseDir, configPath)
-        );
-        try { trayApp.install(); } catch (Exception ignored) {}
+        if (headless) {
+            // 設定は config.json の編集のみ（変更は監視して反映）
+            System.out.println(now() + " ヘッドレスモードで起動: 設定ファイル " + configPath);
+        } else {
+            // トレイアプリ（メニュー：今すぐチェック/設定/ログ/テスト通知/終了）のインストール
+            TrayApp trayApp = new TrayApp(
+                    scheduler,
+                    () -> runCheck(true),
+                    Main::openSettings,
+                    () -> openLogs(baseDir),
+                    () -> notifications.submitTest()
+            );
+            try { trayApp.install(); } catch (Exception ignored) {}
+
+            // First run immediately, then at fixed delay
+            if (firstRun || !config.hasAnyToken()) {
+                // 初回起動 or PAT 未設定時は設定ダイアログを開く
+                openSettings();
+            }
+        }
+        if (config.metricsEnabled) {
+            // Prometheus 形式のメトリクスを /metrics で公開（ポート等の変更は再起動後に反映）
+            try {
+                new MetricsServer(config.metricsBindAddress, config.metricsPort).start();
+            } catch (IOException e) {
+                System.err.println(now() + " メトリクスサーバを起動できません: " + e.getMessage());
+            }
+        }
+        // config.json が（ダイアログ・手動編集のどちらでも）変更されたら、消えた監視のメトリクスを捨て、
+        // プッシュモードを切り替えて次回チェックの予定を組み直す
+        // （チェック用スレッドは 1 本なので、初回チェックより後に実行される）
+        configStore.onChange(cfg -> scheduler.execute(() -> {
+            Metrics.retainWatches(cfg);
+            reconcilePushMode();
+            schedulePolling();
+        }));
+        try {
+            configStore.startWatching();
+        } catch (IOException e) {
+            System.err.println("config.json の監視を開始できません: " + e.getMessage());
+        }
+        if (exitAfterFirstCheck) {
+            firstCheck.get();
+            System.exit(0);
+        }
+    }
+
+    // 起動直後の 1 回目のチェック（チェック用スレッドで実行）。以後はスケジュールで実行
+    private static void runFirstCheck() {
+        try {
+            runCheck(true);
+            // JVM 起動からの経過時間（ProcessHandle の開始時刻は Linux では秒単位の誤差があるため使わない）
+            long millis = ManagementFactory.getRuntimeMXBean().getUptime();
+            Metrics.setTimeToFirstCheck(millis);
+            System.out.println(now() + " 起動から初回チェック完了まで: " + millis + " ms");
+            // プッシュモード: Webhook を受けたセクションのみ再チェックし、ポーリングは安全網として低頻度にする
+            reconcilePushMode();
+        } finally {
+            // 初回チェックが失敗しても定期チェックは始める
+            schedulePolling();
+        }
+    }
+
+    // 設定・内部状態・通知キュー・履歴を baseDir 配下から読み込む（GUI に依存しない部分。ベンチマークからも使用）
+    static void initCore(Path baseDir) throws IOException {
+        Path statePath = baseDir.resolve("state.json");
+        configStore = new ConfigStore(baseDir.resolve("config.json"));
+        state = State.load(statePath);
+        statePersister = new StatePersister(statePath, state);
+        notifications = new NotificationQueue(() -> notifier(baseDir));
+        taskAgePath = baseDir.resolve("task-age.bin");
+        taskAges = TaskAgeIndex.loadAll(taskAgePath);
+        eventTasksPath = baseDir.resolve("event-tasks.bin");
+        eventTasks = EventTaskIndex.loadAll(eventTasksPath);
+        if (configStore.snapshot().historyMaxRecords > 0) {
+            try {
+                history = HistoryStore.open(baseDir.resolve("history.bin"), configStore.snapshot().historyMaxRecords);
+            } catch (Exception e) {
+                System.err.println("履歴ファイルを開けません（履歴なしで継続）: " + e.getMessage());
+            }
+        }
+        // 終了時（トレイの「終了」を含む）に未書き込みの状態・履歴を書き出す
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            statePersister.close();
+            HistoryStore h = history;
+            if (h != null) {
+                try { h.close(); } catch (IOException ignored) {}
+            }
+        }, "state-flush"));
+    }
 
-        // First run immediately, then at fixed delay
-        if (firstRun || config.personalAccessToken == null || config.personalAccessToken.isBlank()) {
-            // 初回起動 or PAT 未設定時は設定ダイアログを開く
-            openSettings(configPath);
+    // 通知ワーカースレッドからのみ呼ばれる。通知に関わる設定が変わったときだけ Notifier を作り直す
+    private static Notifier notifier(Path baseDir) {
+        Config cfg = configStore.snapshot();
+        Config prev = cachedNotifierConfig;
+        if (cachedNotifier == null
+                || !Objects.equals(prev.notificationBackends, cfg.notificationBackends)
+                || !Objects.equals(prev.snoreToastPath, cfg.snoreToastPath)
+                || !Objects.equals(prev.notificationWebhookUrl, cfg.notificationWebhookUrl)) {
+            if (cachedNotifier != null) {
+                System.out.println(now() + " 通知バックエンドの集計: " + cachedNotifier.stats());
+            }
+            cachedNotifier = Notifier.fromConfig(baseDir, cfg, headless);
+            cachedNotifierConfig = cfg;
         }
-        // 起動直後に1回実行し、以後はスケジュールで実行
-        runCheck(configPath, statePath);
-        schedulePolling(configPath, statePath);
+        return cachedNotifier;
     }
 
     private static final Object RUN_LOCK = new Object();
 
     // メインの監視処理：
-    // - 設定/状態の読み込み
-    // - 未完了タスク数の取得
+    // - メモリ上の設定スナップショットと状態を使用（ファイルは読まない）
+    // - 監視対象ごとに未完了タスク数を取得（仮想スレッドで並列実行）
     // - 閾値の「下→上」遷移を検出し、クールダウンを満たす場合に通知
-    private static void runCheck(Path configPath, Path statePath) {
+    // force=false（定期実行）のときは、監視ごとのポーリング間隔が経過したものだけをチェックする
+    static void runCheck(boolean force) {
+        runCheck((w, ws, nowMillis) -> force || isDue(w, ws, nowMillis));
+    }
+
+    // チェック対象の選択条件
+    @FunctionalInterface
+    private interface WatchSelector {
+        boolean select(Config.Watch w, State.WatchState ws, long nowMillis);
+    }
+
+    private static void runCheck(WatchSelector selector) {
         synchronized (RUN_LOCK) {
         try {
-            Config cfg = Config.load(configPath);
-            State st = State.load(statePath);
+            Config cfg = configStore.snapshot();
+            State st = state;
 
-            // If threshold changed, reset edge/cooldown so next check can notify immediately when at/above
-            // 閾値が変更されたら、上昇エッジ検出とクールダウンをリセット
-            if (st.lastThreshold != cfg.threshold) {
-                System.out.println(now() + " 閾値が変更されました: " + st.lastThreshold + " -> " + cfg.threshold + "（通知条件をリセット）");
-                st.wasBelowThreshold = true; // force next check to treat as rising edge if at/above
-                st.lastNotifiedAtEpochMillis = 0L; // clear cooldown
-                st.lastThreshold = cfg.threshold;
+            // 今回チェックする監視対象を選び、状態オブジェクトと認証情報ごとの AsanaClient を事前に用意（並列処理中に Map を変更しない）
+            long nowMillis = System.currentTimeMillis();
+            List<Config.Watch> due = new ArrayList<>();
+            Map<Config.Watch, State.WatchState> states = new LinkedHashMap<>();
+            Map<Config.Watch, AsanaClient> clients = new LinkedHashMap<>();
+            List<String> noToken = new ArrayList<>();
+            for (Config.Watch w : cfg.effectiveWatches()) {
+                Config.Credential cred = cfg.credentialFor(w);
+                if (cred == null) {
+                    System.err.println(now() + " [" + w.label() + "] 認証情報が見つかりません: " + w.credential);
+                    continue;
+                }
+                if (!cred.hasToken()) {
+                    noToken.add(cred.label());
+                    continue;
+                }
+                State.WatchState ws = st.watch(w.key());
+                if (selector.select(w, ws, nowMillis)) {
+                    clients.put(w, clientFor(cred));
+                    due.add(w);
+                    states.put(w, ws);
+                    // 取得に失敗した場合も基準間隔で再試行する（成功時は applyCount で上書き）
+                    ws.nextCheckAtEpochMillis = nowMillis + TimeUnit.MINUTES.toMillis(Math.max(1, w.pollingMinutes));
+                    if (w.usesTaskAge()) taskAges.computeIfAbsent(w.key(), k -> new TaskAgeIndex());
+                    if (w.usesEvents()) eventTasks.computeIfAbsent(w.key(), k -> new EventTaskIndex());
+                }
             }
-
-            if (cfg.personalAccessToken == null || cfg.personalAccessToken.isBlank()) {
-                System.out.println(now() + " PAT 未設定のためスキップ");
+            if (!noToken.isEmpty()) {
+                System.out.println(now() + " PAT 未設定のためスキップ: " + String.join(", ", new LinkedHashSet<>(noToken)));
+            }
+            closeUnusedClients(cfg);
+            if (due.isEmpty()) {
                 return;
             }
-
-            // 対象セクションの GID を取得
-            AsanaClient client = new AsanaClient(cfg.personalAccessToken);
-            Optional<String> sectionGidOpt = client.findSectionGidByName(cfg.projectGid, cfg.targetSectionName);
-            if (sectionGidOpt.isEmpty()) {
-                System.out.println(now() + " セクションが見つかりません: " + cfg.targetSectionName);
+            // 切断中はリクエストを送らず、前回の件数を古い値として出す（再接続時に onNetworkChanged からすぐにチェック）
+            if (offline) {
+                for (Config.Watch w : due) markStale(w, states.get(w), "ネットワークに接続されていません");
+                statePersister.save(st);
                 return;
             }
-            String sectionGid = sectionGidOpt.get();
+            // 遮断器が開いている認証情報の監視はチェックしない（疎通確認の時刻を過ぎていれば、ここで軽いリクエストを 1 回だけ送る）
+            Set<AsanaClient> unavailable = new HashSet<>();
+            for (AsanaClient client : new LinkedHashSet<>(clients.values())) {
+                if (!client.available()) unavailable.add(client);
+            }
+
+            long runStarted = System.nanoTime();
+            // countMode=project の監視は認証情報とプロジェクトの組ごとにまとめ、1 回の走査で全セクション分を数える
+            Map<String, List<Config.Watch>> byProject = new LinkedHashMap<>();
+            // 監視対象（またはプロジェクト）ごとに仮想スレッドを割り当て、全件の完了を待つ（所要時間は最も遅い 1 件分）
+            // 今回のチェックで閾値を超えた監視（全件の完了後にまとめて通知キューへ）
+            Queue<NotificationQueue.Alert> alerts = new ConcurrentLinkedQueue<>();
+            try (ExecutorService exec = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Config.Watch w : due) {
+                    AsanaClient client = clients.get(w);
+                    if (unavailable.contains(client)) {
+                        markStale(w, states.get(w), "Asana API への接続を停止中");
+                        continue;
+                    }
+                    if (Config.Watch.MODE_PROJECT.equals(w.countMode) && !w.scansSection()) {
+                        byProject.computeIfAbsent(client.scheduler().name() + "\u0000" + w.projectGid, k -> new ArrayList<>()).add(w);
+                        continue;
+                    }
+                    State.WatchState ws = states.get(w);
+                    exec.submit(() -> checkWatch(client, cfg, w, ws, alerts));
+                }
+                for (List<Config.Watch> group : byProject.values()) {
+                    Config.Watch first = group.get(0);
+                    exec.submit(() -> checkProject(clients.get(first), cfg, first.projectGid, group, states, alerts));
+                }
+            }
+            Metrics.recordRun(System.nanoTime() - runStarted);
+            notifications.submit(new ArrayList<>(alerts));
+
+            // 429/再試行・認証エラー・接続失敗が増えた認証情報のみ累計を記録
+            for (AsanaClient client : new LinkedHashSet<>(clients.values())) {
+                RequestScheduler rs = client.scheduler();
+                long failures = rs.throttledCount() + rs.retriedCount() + rs.authFailureCount() + rs.requestErrorCount();
+                Long last = lastLoggedFailures.put(rs.name(), failures);
+                if (last == null ? failures > 0 : failures != last) {
+                    System.out.println(now() + " [" + rs.name() + "] API 再試行・失敗の累計: 429=" + rs.throttledCount()
+                            + " 再試行=" + rs.retriedCount() + " 認証エラー=" + rs.authFailureCount() + " 接続失敗=" + rs.requestErrorCount());
+                }
+            }
+
+            // 状態を保存（内容が変わった場合のみ、まとめて書き込む）
+            statePersister.save(st);
+            if (due.stream().anyMatch(Config.Watch::usesTaskAge)) saveTaskAges(cfg);
+            if (due.stream().anyMatch(Config.Watch::usesEvents)) saveEventTasks(cfg);
+        } catch (Exception e) {
+            System.err.println(now() + " チェック中にエラー: " + LoggerUtil.errorMessage(e));
+        }
+        }
+    }
+
+    // offlineCheckSeconds ごとに API のホストへの疎通を確認する。接続を待つ間チェック用スレッドを塞がないよう専用のデーモンスレッドで実行し、
+    // 接続状態が変わったときだけチェック用スレッドへ知らせる
+    private static void startNetworkMonitor(int seconds) {
+        ScheduledExecutorService probe = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "network-probe");
+            t.setDaemon(true);
+            return t;
+        });
+        probe.scheduleWithFixedDelay(() -> {
+            boolean up = NetworkProbe.isApiReachable(configStore.snapshot());
+            if (up == offline) scheduler.execute(() -> onNetworkChanged(up));
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    // 接続状態の変化を反映する（チェック用スレッドで実行）。
+    // 再接続したら、開いている遮断器の疎通確認を前倒しして、すべての監視をすぐにチェックする
+    private static void onNetworkChanged(boolean up) {
+        if (up != offline) return;
+        offline = !up;
+        if (offline) {
+            System.out.println(now() + " Asana API に接続できないため、再接続までチェックを停止します");
+            return;
+        }
+        System.out.println(now() + " Asana API に再接続したため、すぐにチェックします");
+        synchronized (CLIENT_LOCK) {
+            for (AsanaClient client : asanaClients.values()) client.scheduler().breaker().probeNow();
+        }
+        runCheck(true);
+        schedulePolling();
+    }
+
+    // 件数を取得できなかった監視は、前回の件数（state.json の lastCount）を古い値としてメトリクスに出し続ける
+    // ログは取得できなくなったときに 1 回だけ出す
+    private static void markStale(Config.Watch w, State.WatchState ws, String reason) {
+        String label = w.label();
+        if (ws.lastCheckedAtEpochMillis > 0) Metrics.setWatchCount(w, ws.lastCount, w.threshold);
+        Metrics.setWatchStale(w, true);
+        if (ws.staleSinceEpochMillis != 0L) return;
+        ws.staleSinceEpochMillis = System.currentTimeMillis();
+        String last = ws.lastCheckedAtEpochMillis > 0
+                ? "前回の件数 " + ws.lastCount + "（" + Instant.ofEpochMilli(ws.lastCheckedAtEpochMillis) + " 時点）を使います"
+                : "取得済みの件数はありません";
+        System.out.println(now() + " [" + label + "] 件数を取得できないため" + last + ": " + reason);
+    }
+
+    // 滞留時間の索引を task-age.bin に書き込む。滞留時間を監視しなくなった監視の索引は捨てる
+    private static void saveTaskAges(Config cfg) {
+        Set<String> keys = new HashSet<>();
+        for (Config.Watch w : cfg.effectiveWatches()) {
+            if (w.usesTaskAge()) keys.add(w.key());
+        }
+        taskAges.keySet().retainAll(keys);
+        try {
+            TaskAgeIndex.saveAll(taskAgePath, taskAges);
+        } catch (IOException e) {
+            System.err.println(now() + " 滞留時間の索引の保存に失敗: " + e.getMessage());
+        }
+    }
+
+    // events モードの GID 集合と同期トークンを event-tasks.bin に書き込む。events モードでなくなった監視の分は捨てる
+    private static void saveEventTasks(Config cfg) {
+        Set<String> keys = new HashSet<>();
+        for (Config.Watch w : cfg.effectiveWatches()) {
+            if (w.usesEvents()) keys.add(w.key());
+        }
+        eventTasks.keySet().retainAll(keys);
+        try {
+            EventTaskIndex.saveAll(eventTasksPath, eventTasks);
+        } catch (IOException e) {
+            System.err.println(now() + " events モードの未完了タスク集合の保存に失敗: " + e.getMessage());
+        }
+    }
+
+    // 監視の次回チェック予定時刻を過ぎているか（スケジューラの揺らぎを考慮して少し余裕を持たせる）
+    private static boolean isDue(Config.Watch w, State.WatchState ws, long nowMillis) {
+        return nowMillis >= nextCheckAt(w, ws) - DUE_SLACK_MILLIS;
+    }
+
+    // 次回チェック予定時刻（予定が未記録の旧状態では、最終チェック時刻 + 基準間隔）
+    private static long nextCheckAt(Config.Watch w, State.WatchState ws) {
+        if (ws.nextCheckAtEpochMillis > 0) return ws.nextCheckAtEpochMillis;
+        return ws.lastCheckedAtEpochMillis + TimeUnit.MINUTES.toMillis(Math.max(1, w.pollingMinutes));
+    }
+
+    private static final long DUE_SLACK_MILLIS = 5_000L;
+    // スケジュールの最短・最長待機時間
+    private static final long MIN_SCHEDULE_DELAY_MILLIS = 10_000L;
+    private static final long MAX_SCHEDULE_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    // 予定を計算できなかったときの待ち時間
+    private static final long FALLBACK_SCHEDULE_DELAY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private static final Object CLIENT_LOCK = new Object();
+    // 認証情報の名前 -> AsanaClient（HttpClient の接続・レート制限・429 の待機・失敗の集計は認証情報ごとに独立）
+    private static final Map<String, AsanaClient> asanaClients = new HashMap<>();
+    // 認証情報ごとの、前回ログに出した再試行・失敗の累計
+    private static final Map<String, Long> lastLoggedFailures = new HashMap<>();
+
+    // 認証情報の AsanaClient を返す（PAT・API の URL・レート制限の設定が変わった場合のみ作り直す）
+    private static AsanaClient clientFor(Config.Credential cred) {
+        synchronized (CLIENT_LOCK) {
+            AsanaClient client = asanaClients.get(cred.label());
+            if (client == null || !client.usesToken(cred.personalAccessToken) || !client.usesApiBase(cred.apiBaseUrl)
+                    || !client.scheduler().hasLimits(cred.requestsPerMinute, cred.maxConcurrentRequests)) {
+                if (client != null) client.close();
+                client = new AsanaClient(cred.personalAccessToken,
+                        new RequestScheduler(cred.label(), cred.requestsPerMinute, cred.maxConcurrentRequests), cred.apiBaseUrl);
+                asanaClients.put(cred.label(), client);
+            }
+            return client;
+        }
+    }
 
-            // 未完了タスク数をカウント
-            int count = client.countIncompleteTasksInSection(sectionGid);
-            System.out.println(now() + " 未完了数: " + count);
+    // 設定から消えた認証情報の AsanaClient を閉じる
+    private static void closeUnusedClients(Config cfg) {
+        Set<String> names = new HashSet<>();
+        names.add(Config.DEFAULT_CREDENTIAL);
+        if (cfg.credentials != null) {
+            for (Config.Credential c : cfg.credentials) {
+                if (c != null) names.add(c.label());
+            }
+        }
+        synchronized (CLIENT_LOCK) {
+            asanaClients.entrySet().removeIf(e -> {
+                if (names.contains(e.getKey())) return false;
+                e.getValue().close();
+                return true;
+            });
+        }
+    }
 
-            boolean nowBelow = count < cfg.threshold;
-            boolean crossedUp = st.wasBelowThreshold && !nowBelow; // below -> at/above
-            boolean cooldownOk = st.lastNotifiedAtEpochMillis == 0 ||
-                    (Duration.between(Instant.ofEpochMilli(st.lastNotifiedAtEpochMillis), Instant.now()).toMinutes() >= cfg.cooldownMinutes);
+    // 1 つの監視対象をチェックし、その状態を更新する
+    private static void checkWatch(AsanaClient client, Config cfg, Config.Watch w, State.WatchState ws, Queue<NotificationQueue.Alert> alerts) {
+        String label = w.label();
+        long started = System.nanoTime();
+        try {
+            // 対象セクションの GID を（キャッシュから）解決し、未完了タスク数をカウント
+            // 内訳・滞留時間を使う監視は countMode に関わらず、タスク一覧の 1 回の走査で総数と内訳・索引の更新を行う
+            SectionBreakdown[] breakdown = {null};
+            TaskAgeIndex ages = w.usesTaskAge() ? taskAges.get(w.key()) : null;
+            AsanaClient.SectionCall<Integer> counter;
+            if (w.usesBreakdown()) {
+                counter = sectionGid -> {
+                    breakdown[0] = client.breakdownIncompleteTasksInSection(sectionGid, w.breakdownFieldGids(), ages);
+                    return breakdown[0].total();
+                };
+            } else if (ages != null) {
+                counter = sectionGid -> client.countIncompleteTasksInSection(sectionGid, ages);
+            } else if (w.usesEvents()) {
+                EventTaskIndex index = eventTasks.get(w.key());
+                counter = sectionGid -> SectionEventTracker.count(client, sectionGid, index);
+            } else {
+                counter = client::countIncompleteTasksInSection;
+            }
+            Optional<Integer> countOpt = client.withSection(w.projectGid, w.targetSectionName, counter);
+            long latencyNanos = System.nanoTime() - started;
+            Metrics.recordWatchCheck(w, latencyNanos, countOpt.isPresent());
+            if (countOpt.isEmpty()) {
+                System.out.println(now() + " [" + label + "] セクションが見つかりません: " + w.targetSectionName);
+                return;
+            }
+            applyCount(cfg, w, ws, countOpt.get(), alerts);
+            if (breakdown[0] != null) applyBuckets(w, ws, breakdown[0], alerts);
+            if (ages != null) applyTaskAge(w, ws, ages, alerts);
+            // 直前に解決済みのためキャッシュから取得される
+            Optional<String> gid = client.resolveSectionGid(w.projectGid, w.targetSectionName);
+            gid.ifPresent(g -> recordHistory(g, countOpt.get(), latencyNanos));
+        } catch (Exception e) {
+            Metrics.recordWatchCheck(w, System.nanoTime() - started, false);
+            // 遮断器が開いたことはログに出しているため、その後に失敗したチェックは markStale のログだけにする
+            if (!(e instanceof CircuitOpenException)) {
+                System.err.println(now() + " [" + label + "] チェック中にエラー: " + LoggerUtil.errorMessage(e));
+            }
+            markStale(w, ws, LoggerUtil.errorMessage(e));
+        }
+    }
 
-            // 閾値を下回っていた状態から「閾値以上」に上がり、かつクールダウンを満たしていれば通知
-            if (!nowBelow && crossedUp && cooldownOk) {
-                Notifier notifier = new Notifier(getAppDataDir(), cfg.snoreToastPath, cfg.boardUrl, null);
-                try {
-                    notifier.notifyThreshold(count, cfg.targetSectionName, cfg.threshold);
-                } catch (IOException | InterruptedException e) {
-                    System.err.println("通知に失敗: " + e.getMessage());
+    // 同じプロジェクトの監視をまとめてチェックする（プロジェクトのタスク一覧を 1 回だけ走査）
+    private static void checkProject(AsanaClient client, Config cfg, String projectGid, List<Config.Watch> watches,
+                                     Map<Config.Watch, State.WatchState> states, Queue<NotificationQueue.Alert> alerts) {
+        LongIntHashMap counts;
+        long latencyNanos;
+        long started = System.nanoTime();
+        try {
+            counts = client.countIncompleteTasksBySection(projectGid);
+            latencyNanos = System.nanoTime() - started;
+        } catch (Exception e) {
+            for (Config.Watch w : watches) {
+                Metrics.recordWatchCheck(w, System.nanoTime() - started, false);
+                markStale(w, states.get(w), LoggerUtil.errorMessage(e));
+            }
+            if (!(e instanceof CircuitOpenException)) {
+                System.err.println(now() + " [project " + projectGid + "] チェック中にエラー: " + LoggerUtil.errorMessage(e));
+            }
+            return;
+        }
+        for (Config.Watch w : watches) {
+            String label = w.label();
+            try {
+                Optional<String> gid = client.resolveSectionGid(projectGid, w.targetSectionName);
+                // 集計に現れない GID はセクションが空か、キャッシュが古い可能性がある。
+                // 引き直すのは GID が古いときだけで、最近解決した GID なら空のセクション（0 件）として扱う
+                if (gid.isPresent() && !counts.containsKey(Long.parseLong(gid.get()))
+                        && client.isSectionGidDueForRecheck(projectGid, w.targetSectionName)) {
+                    client.invalidateSectionGid(projectGid, w.targetSectionName);
+                    gid = client.resolveSectionGid(projectGid, w.targetSectionName);
+                }
+                Metrics.recordWatchCheck(w, latencyNanos, gid.isPresent());
+                if (gid.isEmpty()) {
+                    System.out.println(now() + " [" + label + "] セクションが見つかりません: " + w.targetSectionName);
+                    continue;
                 }
-                st.lastNotifiedAtEpochMillis = System.currentTimeMillis();
+                int count = counts.get(Long.parseLong(gid.get()));
+                applyCount(cfg, w, states.get(w), count, alerts);
+                recordHistory(gid.get(), count, latencyNanos);
+            } catch (Exception e) {
+                System.err.println(now() + " [" + label + "] チェック中にエラー: " + LoggerUtil.errorMessage(e));
+            }
+        }
+    }
+
+    // 件数と取得時間を履歴へ追記（GID が数値でない場合は記録しない）
+    private static void recordHistory(String sectionGid, int count, long latencyNanos) {
+        HistoryStore h = history;
+        if (h == null) return;
+        try {
+            h.append(System.currentTimeMillis(), Long.parseLong(sectionGid), count, (int) TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    // 取得した未完了数を監視の状態へ反映し、閾値の「下→上」遷移で通知を alerts へ積む
+    private static void applyCount(Config cfg, Config.Watch w, State.WatchState ws, int count, Queue<NotificationQueue.Alert> alerts) {
+        String label = w.label();
+        // If threshold changed, reset edge/cooldown so next check can notify immediately when at/above
+        // 閾値が変更されたら、上昇エッジ検出とクールダウンをリセット
+        if (ws.lastThreshold != w.threshold) {
+            System.out.println(now() + " [" + label + "] 閾値が変更されました: " + ws.lastThreshold + " -> " + w.threshold + "（通知条件をリセット）");
+            ws.wasBelowThreshold = true; // force next check to treat as rising edge if at/above
+            ws.lastNotifiedAtEpochMillis = 0L; // clear cooldown
+            ws.lastThreshold = w.threshold;
+        }
+
+        long nowMillis = System.currentTimeMillis();
+        // Webhook が有効な監視は、取りこぼし対策の低頻度ポーリングのみ
+        int interval = webhookServer != null && ws.webhookGid != null
+                ? Math.max(Math.max(1, w.pollingMinutes), cfg.webhookSafetyPollMinutes)
+                : AdaptivePolling.nextIntervalMinutes(w, ws, count, nowMillis);
+        ws.intervalMinutes = interval;
+        ws.lastCheckedAtEpochMillis = nowMillis;
+        ws.nextCheckAtEpochMillis = nowMillis + TimeUnit.MINUTES.toMillis(interval);
+        System.out.println(now() + " [" + label + "] 未完了数: " + count + "（次回 " + interval + " 分後）");
+        if (ws.staleSinceEpochMillis != 0L) {
+            System.out.println(now() + " [" + label + "] 件数の取得を再開しました（" + Instant.ofEpochMilli(ws.staleSinceEpochMillis) + " から前回の件数を使用）");
+            ws.staleSinceEpochMillis = 0L;
+        }
+        Metrics.setWatchCount(w, count, w.threshold);
+        Metrics.setWatchStale(w, false);
+
+        boolean nowBelow = count < w.threshold;
+        boolean crossedUp = ws.wasBelowThreshold && !nowBelow; // below -> at/above
+        boolean cooldownOk = ws.lastNotifiedAtEpochMillis == 0 ||
+                (Duration.between(Instant.ofEpochMilli(ws.lastNotifiedAtEpochMillis), Instant.now()).toMinutes() >= w.cooldownMinutes);
+
+        // 閾値を下回っていた状態から「閾値以上」に上がり、かつクールダウンを満たしていれば通知
+        if (!nowBelow && crossedUp && cooldownOk) {
+            alerts.add(new NotificationQueue.Alert(label, count, w.threshold));
+            ws.lastNotifiedAtEpochMillis = System.currentTimeMillis();
+        }
+
+        ws.wasBelowThreshold = nowBelow;
+        ws.lastCount = count;
+    }
+
+    // 内訳をログに出し、区分ごとの閾値（bucketThresholds）を applyCount と同じ規則（下→上の遷移・クールダウン）で判定する
+    private static void applyBuckets(Config.Watch w, State.WatchState ws, SectionBreakdown breakdown, Queue<NotificationQueue.Alert> alerts) {
+        System.out.println(now() + " [" + w.label() + "] 内訳: " + breakdown.describe(5));
+        long nowMillis = System.currentTimeMillis();
+        // 設定から消えた区分の状態は捨てる
+        Map<String, State.BucketState> next = new LinkedHashMap<>();
+        for (Config.BucketThreshold t : w.bucketThresholds != null ? w.bucketThresholds : List.<Config.BucketThreshold>of()) {
+            State.BucketState bs = ws.buckets.getOrDefault(t.key(), new State.BucketState());
+            next.put(t.key(), bs);
+            String label = w.label() + " / " + t.label();
+            int count = breakdown.count(t.field, t.value);
+            if (bs.lastThreshold != t.threshold) {
+                bs.wasBelowThreshold = true;
+                bs.lastNotifiedAtEpochMillis = 0L;
+                bs.lastThreshold = t.threshold;
+            }
+            Metrics.setBucketCount(w, t, count);
+            boolean nowBelow = count < t.threshold;
+            boolean cooldownOk = bs.lastNotifiedAtEpochMillis == 0
+                    || nowMillis - bs.lastNotifiedAtEpochMillis >= TimeUnit.MINUTES.toMillis(w.cooldownMinutes);
+            if (!nowBelow && bs.wasBelowThreshold && cooldownOk) {
+                alerts.add(new NotificationQueue.Alert(label, count, t.threshold));
+                bs.lastNotifiedAtEpochMillis = nowMillis;
+            }
+            bs.wasBelowThreshold = nowBelow;
+            bs.lastCount = count;
+        }
+        ws.buckets = next;
+    }
+
+    // 最も古い未完了タスクの滞留時間をログ・メトリクスに出し、maxTaskAgeHours を applyCount と同じ規則で判定する
+    private static void applyTaskAge(Config.Watch w, State.WatchState ws, TaskAgeIndex ages, Queue<NotificationQueue.Alert> alerts) {
+        long gid;
+        long since;
+        if (Config.Watch.AGE_FROM_CREATED.equals(w.taskAgeFrom)) {
+            gid = ages.oldestCreatedGid();
+            since = ages.oldestCreated();
+        } else if (Config.Watch.AGE_FROM_MODIFIED.equals(w.taskAgeFrom)) {
+            gid = ages.oldestModifiedGid();
+            since = ages.oldestModified();
+        } else {
+            gid = ages.oldestFirstSeenGid();
+            since = ages.oldestFirstSeen();
+        }
+        long nowMillis = System.currentTimeMillis();
+        long ageSeconds = gid == 0L ? 0L : Math.max(0L, TimeUnit.MILLISECONDS.toSeconds(nowMillis) - since);
+        int hours = (int) Math.min(Integer.MAX_VALUE, TimeUnit.SECONDS.toHours(ageSeconds));
+        Metrics.setOldestTaskAge(w, ageSeconds);
+        if (gid != 0L) {
+            System.out.println(now() + " [" + w.label() + "] 最も古い未完了タスク: " + hours + " 時間（"
+                    + Instant.ofEpochSecond(since) + " から、https://app.asana.com/0/" + w.projectGid + "/" + gid + "）");
+        }
+        State.BucketState as = ws.taskAge != null ? ws.taskAge : new State.BucketState();
+        ws.taskAge = as;
+        if (as.lastThreshold != w.maxTaskAgeHours) {
+            as.wasBelowThreshold = true;
+            as.lastNotifiedAtEpochMillis = 0L;
+            as.lastThreshold = w.maxTaskAgeHours;
+        }
+        boolean nowBelow = hours < w.maxTaskAgeHours;
+        boolean cooldownOk = as.lastNotifiedAtEpochMillis == 0
+                || nowMillis - as.lastNotifiedAtEpochMillis >= TimeUnit.MINUTES.toMillis(w.cooldownMinutes);
+        if (!nowBelow && as.wasBelowThreshold && cooldownOk) {
+            alerts.add(new NotificationQueue.Alert(w.label() + " の最も古いタスク", hours, w.maxTaskAgeHours, "時間"));
+            as.lastNotifiedAtEpochMillis = nowMillis;
+        }
+        as.wasBelowThreshold = nowBelow;
+        as.lastCount = hours;
+    }
+
+    private static volatile WebhookServer webhookServer;
+    // webhookServer を起動したときの設定のポート（変わったら起動し直す）
+    private static int webhookServerPort;
+    // Webhook 受信後のチェック待ちのセクション（短時間に届いた複数の配信を 1 回のチェックにまとめる）
+    private static final Set<String> pendingPushChecks = ConcurrentHashMap.newKeySet();
+    private static final long PUSH_DEBOUNCE_SECONDS = 2L;
+
+    // プッシュモードを設定に合わせる（初回チェックの後と config.json の変更時に、チェック用スレッドで実行）
+    // - 有効: Webhook 受信サーバを起動（ポートが変わったら起動し直す）し、各監視セクションに Webhook を登録（登録済みで有効なものは再利用）
+    // - 無効: 受信サーバを止め、登録済みの Webhook を削除する
+    // - 設定から消えた監視の Webhook は削除する
+    private static void reconcilePushMode() {
+        try {
+            Config cfg = configStore.snapshot();
+            boolean enabled = cfg.webhookEnabled && cfg.hasAnyToken();
+            if (enabled && (cfg.webhookPublicUrl == null || cfg.webhookPublicUrl.isBlank())) {
+                System.out.println(now() + " webhookPublicUrl 未設定のためプッシュモードを無効化");
+                enabled = false;
+            }
+            WebhookServer server = webhookServer;
+            if (server != null && (!enabled || cfg.webhookPort != webhookServerPort)) {
+                webhookServer = null;
+                server.stop();
+                System.out.println(now() + " Webhook 受信サーバを停止");
+                server = null;
+            }
+            if (enabled && server == null) {
+                server = new WebhookServer(cfg.webhookPort, Main::onWebhookEvent);
+                server.start();
+                webhookServer = server;
+                webhookServerPort = cfg.webhookPort;
             }
 
-            // 状態を更新・保存
-            st.wasBelowThreshold = nowBelow;
-            st.lastCount = count;
-            State.save(st, statePath);
+            synchronized (RUN_LOCK) {
+                State st = state;
+                Set<String> keep = new HashSet<>();
+                if (enabled) {
+                    String base = cfg.webhookPublicUrl.endsWith("/") ? cfg.webhookPublicUrl.substring(0, cfg.webhookPublicUrl.length() - 1) : cfg.webhookPublicUrl;
+                    for (Config.Watch w : cfg.effectiveWatches()) {
+                        keep.add(w.key());
+                        registerWebhook(cfg, w, st.watch(w.key()), server, base);
+                    }
+                }
+                for (Map.Entry<String, State.WatchState> e : st.watches.entrySet()) {
+                    if (e.getValue().webhookGid != null && !keep.contains(e.getKey())) {
+                        unregisterWebhook(cfg, e.getKey(), e.getValue());
+                    }
+                }
+                statePersister.save(st);
+            }
+        } catch (Exception e) {
+            System.err.println(now() + " プッシュモードの切り替えに失敗: " + LoggerUtil.errorMessage(e));
+        }
+    }
+    // 監視セクションに Webhook を登録する。同じセクション・配信先・認証情報で登録済みのものは再利用する
+    private static void registerWebhook(Config cfg, Config.Watch w, State.WatchState ws, WebhookServer server, String base) {
+        Config.Credential cred = cfg.credentialFor(w);
+        if (cred == null || !cred.hasToken()) return;
+        AsanaClient client = clientFor(cred);
+        try {
+            Optional<String> sectionGid = client.resolveSectionGid(w.projectGid, w.targetSectionName);
+            if (sectionGid.isEmpty()) return;
+            String gid = sectionGid.get();
+            String target = base + WebhookServer.PATH_PREFIX + gid;
+            if (ws.webhookGid != null && ws.webhookSecret != null && gid.equals(ws.webhookSectionGid)
+                    && target.equals(ws.webhookTarget) && cred.label().equals(ws.webhookCredential)) {
+                // この受信サーバで登録・確認済み（設定の再読み込み）なら API を呼ばない
+                if (ws.webhookSecret.equals(server.secret(gid))) return;
+                if (client.isWebhookActive(ws.webhookGid)) {
+                    server.putSecret(gid, ws.webhookSecret);
+                    return;
+                }
+            }
+            if (ws.webhookGid != null) {
+                unregisterWebhook(cfg, w.key(), ws);
+            }
+            server.expectHandshake(gid);
+            try {
+                ws.webhookGid = client.createWebhook(gid, target);
+            } finally {
+                // 登録に失敗しても、後から届いた同じセクションのハンドシェイクは受け付けない
+                server.cancelHandshake(gid);
+            }
+            ws.webhookSectionGid = gid;
+            ws.webhookSecret = server.secret(gid);
+            ws.webhookCredential = cred.label();
+            ws.webhookTarget = target;
+            System.out.println(now() + " [" + w.label() + "] Webhook を登録: " + ws.webhookGid);
         } catch (Exception e) {
-            System.err.println(now() + " チェック中にエラー: " + e.getMessage());
+            ws.webhookGid = null;
+            System.err.println(now() + " [" + w.label() + "] Webhook 登録に失敗（ポーリングを継続）: " + LoggerUtil.errorMessage(e));
         }
+    }
+
+    // 登録済みの Webhook を、登録に使った認証情報で削除する（削除に失敗しても状態からは外す。Asana は配信に失敗し続ける Webhook を自動で削除する）
+    private static void unregisterWebhook(Config cfg, String key, State.WatchState ws) {
+        Config.Credential cred = cfg.credential(ws.webhookCredential);
+        try {
+            if (cred != null && cred.hasToken()) {
+                clientFor(cred).deleteWebhook(ws.webhookGid);
+                System.out.println(now() + " [" + key + "] Webhook を削除: " + ws.webhookGid);
+            }
+        } catch (Exception e) {
+            System.err.println(now() + " [" + key + "] Webhook の削除に失敗: " + LoggerUtil.errorMessage(e));
         }
+        ws.webhookGid = null;
+        ws.webhookSectionGid = null;
+        ws.webhookSecret = null;
+        ws.webhookCredential = null;
+        ws.webhookTarget = null;
     }
 
-    // 設定ダイアログを EDT 上で開く。保存された場合はポーリングスケジュールを更新
-    private static void openSettings(Path configPath) {
+    // Webhook でタスクのイベントを受けたら、少し待ってからそのセクションの監視だけを再チェック
+    private static void onWebhookEvent(String sectionGid) {
+        if (!pendingPushChecks.add(sectionGid)) return;
+        scheduler.schedule(() -> {
+            pendingPushChecks.remove(sectionGid);
+            runCheck((w, ws, nowMillis) -> sectionGid.equals(ws.webhookSectionGid));
+        }, PUSH_DEBOUNCE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // 設定ダイアログを EDT 上で開く。保存された設定はすぐに公開され、変更リスナーがスケジュールを更新する
+    private static void openSettings() {
         Runnable showDialog = () -> {
             try {
-                Config cfg = Config.load(configPath);
+                Config cfg = configStore.editableCopy();
                 SettingsDialog dlg = new SettingsDialog(null, cfg);
                 dlg.setVisible(true);
                 if (dlg.isSaved()) {
                     try {
-                        Config.save(cfg, configPath);
-                        schedulePolling(configPath, getAppDataDir().resolve("state.json"));
+                        configStore.save(cfg);
                     } catch (IOException ex) {
                         System.err.println("設定保存に失敗: " + ex.getMessage());
                     }
@@ -151,12 +815,9 @@ public class Main {
             }
         };
 
+        // SettingsDialog（Swing）のクラスは初めて開いたときに読み込まれる。起動処理は表示を待たない
         try {
-            if (EventQueue.isDispatchThread()) {
-                showDialog.run();
-            } else {
-                EventQueue.invokeAndWait(showDialog);
-            }
+            TrayApp.runOnEdt(showDialog);
         } catch (Exception e) {
             System.err.println("設定ダイアログの起動に失敗: " + e.getMessage());
         }
@@ -164,6 +825,11 @@ public class Main {
 
     // アプリデータディレクトリの解決（Windows は %APPDATA%/AsanaWatcher を優先）
     private static Path getAppDataDir() {
+        // -Dasanawatcher.home=<dir> で変更可（AppCDS の学習実行など）
+        String override = System.getProperty("asanawatcher.home");
+        if (override != null && !override.isBlank()) {
+            return Path.of(override);
+        }
         if (isWindows()) {
             String appData = System.getenv("APPDATA");
             if (appData != null && !appData.isBlank()) {
@@ -183,19 +849,47 @@ public class Main {
     }
 
     // ポーリングスケジュールを設定/更新（既存のスケジュールはキャンセルして再登録）
-    private static void schedulePolling(Path configPath, Path statePath) {
+    // 監視ごとに次回予定時刻が異なるため、最も早い予定時刻に 1 回だけ実行し、実行後に次の予定を登録し直す。
+    // 実行中の例外は ScheduledExecutorService に握りつぶされるため、ここでログに出し、次の予定は必ず登録する
+    private static synchronized void schedulePolling() {
+        long nowMillis = System.currentTimeMillis();
+        long delay;
         try {
-            Config cfg = Config.load(configPath);
-            int minutes = Math.max(1, cfg.pollingMinutes);
-            if (scheduledTask != null && !scheduledTask.isCancelled()) {
-                scheduledTask.cancel(false);
+            delay = nextPollingDelayMillis(configStore.snapshot(), nowMillis);
+        } catch (RuntimeException e) {
+            System.err.println(now() + " 次回チェックの予定を計算できません（" + TimeUnit.MILLISECONDS.toSeconds(FALLBACK_SCHEDULE_DELAY_MILLIS)
+                    + " 秒後に再試行）: " + LoggerUtil.errorMessage(e));
+            delay = FALLBACK_SCHEDULE_DELAY_MILLIS;
+        }
+        if (scheduledTask != null && !scheduledTask.isCancelled()) {
+            scheduledTask.cancel(false);
+        }
+        scheduledTask = scheduler.schedule(() -> {
+            try {
+                runCheck(false);
+            } catch (RuntimeException e) {
+                System.err.println(now() + " チェック中にエラー: " + LoggerUtil.errorMessage(e));
+            } finally {
+                schedulePolling();
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        System.out.println(now() + " 次回チェック予定: " + Instant.ofEpochMilli(nowMillis + delay));
+    }
+
+    // 最も早い監視の次回予定時刻までの待ち時間
+    private static long nextPollingDelayMillis(Config cfg, long nowMillis) {
+        long delay = MAX_SCHEDULE_DELAY_MILLIS;
+        synchronized (RUN_LOCK) {
+            for (Config.Watch w : cfg.effectiveWatches()) {
+                State.WatchState ws = state.watches.get(w.key());
+                long next = ws != null ? nextCheckAt(w, ws) : nowMillis + TimeUnit.MINUTES.toMillis(Math.max(1, w.pollingMinutes));
+                delay = Math.min(delay, next - nowMillis);
             }
-            scheduledTask = scheduler.scheduleWithFixedDelay(() -> runCheck(configPath, statePath), minutes, minutes, TimeUnit.MINUTES);
-        } catch (IOException e) {
-            System.err.println("ポーリングスケジュール更新に失敗: " + e.getMessage());
         }
+        return Math.max(MIN_SCHEDULE_DELAY_MILLIS, delay);
     }
 
+    // 初めて開いたときに生成（LogViewerDialog のクラスもその時まで読み込まない）
     private static volatile LogViewerDialog logDialog;
     // ログビューアダイアログを開く（必要に応じて生成）
     private static void openLogs(Path baseDir) {
@@ -212,18 +906,8 @@ public class Main {
             }
         };
         try {
-            if (EventQueue.isDispatchThread()) show.run(); else EventQueue.invokeLater(show);
+            TrayApp.runOnEdt(show);
         } catch (Exception ignored) {}
     }
 
-    // テスト通知を送出（SnoreToast が見つかればそちら、なければ AWT バルーン）
-    private static void testNotify(Path baseDir, Path configPath) {
-        try {
-            Config cfg = Config.load(configPath);
-            Notifier notifier = new Notifier(baseDir, cfg.snoreToastPath, cfg.boardUrl, null);
-            notifier.notifyTest();
-        } catch (Exception e) {
-            System.err.println("テスト通知に失敗: " + e.getMessage());
-        }
-    }
 }
@@ -0,0 +1,287 @@
+package com.example.asanawatcher;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * プロセス内のメトリクス（Prometheus のテキスト形式で出力）。
+ * 記録側は LongAdder の加算だけで、チェック処理をほとんど遅くしない。
+ * MetricsServer の /metrics から render() の結果を返す。
+ */
+public final class Metrics {
+    private Metrics() {}
+
+    // リクエスト 1 回（ヘッダ受信まで）と、チェック 1 回分の所要時間のバケット（秒）
+    private static final double[] REQUEST_BUCKETS = {0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30};
+    private static final double[] CHECK_BUCKETS = {0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 120};
+
+    private static final Histogram REQUEST_SECONDS = new Histogram(REQUEST_BUCKETS);
+    private static final Histogram RUN_SECONDS = new Histogram(CHECK_BUCKETS);
+    // 監視ごとの系列のキーは Config.Watch#key（区分ごとの閾値は bucketKey）。表示名は別プロジェクトの同名セクションと重なるため使わない。
+    // キー -> ラベル（project / section / watch=表示名 [/ bucket]）。設定から消えた監視の系列は retainWatches で捨てる
+    private static final Map<String, String> WATCH_LABELS = new ConcurrentHashMap<>();
+    // 監視ごとのチェック時間
+    private static final Map<String, Histogram> WATCH_CHECK_SECONDS = new ConcurrentHashMap<>();
+    private static final Map<Integer, LongAdder> RESPONSES = new ConcurrentHashMap<>();
+    private static final LongAdder REQUEST_ERRORS = new LongAdder();
+    private static final LongAdder RETRIES = new LongAdder();
+    private static final LongAdder THROTTLED = new LongAdder();
+    private static final LongAdder PAGES = new LongAdder();
+    private static final LongAdder BYTES = new LongAdder();
+    private static final LongAdder CHECK_FAILURES = new LongAdder();
+    // "credential\u0000outcome" -> リクエスト数（outcome: ok / throttled / auth_failed / server_error / client_error / error / probe_ok / probe_failed）
+    private static final Map<String, LongAdder> CREDENTIAL_REQUESTS = new ConcurrentHashMap<>();
+    // "backend\u0000outcome" -> 件数（outcome: ok / failed / dropped）
+    private static final Map<String, LongAdder> NOTIFICATIONS = new ConcurrentHashMap<>();
+    private static final Map<String, int[]> WATCH_COUNTS = new ConcurrentHashMap<>();
+    // 前回のチェックで件数を取得できず、前回までの件数を出している監視
+    private static final Set<String> STALE_WATCHES = ConcurrentHashMap.newKeySet();
+    // 遮断器が開いている認証情報（値は開いているか）
+    private static final Map<String, Boolean> CIRCUITS_OPEN = new ConcurrentHashMap<>();
+    // 監視ごとの最も古い未完了タスクの滞留時間（秒）
+    private static final Map<String, Long> OLDEST_TASK_AGES = new ConcurrentHashMap<>();
+    // プロセス開始から初回チェック完了まで（ミリ秒。未完了なら -1）
+    private static volatile long timeToFirstCheckMillis = -1;
+
+    // 固定バケットのヒストグラム（累積ではなくバケットごとに数え、出力時に累積する）
+    static final class Histogram {
+        private final double[] bounds;
+        private final LongAdder[] counts;
+        private final LongAdder sumNanos = new LongAdder();
+
+        Histogram(double[] bounds) {
+            this.bounds = bounds;
+            this.counts = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < counts.length; i++) counts[i] = new LongAdder();
+        }
+
+        void observeNanos(long nanos) {
+            double seconds = nanos / 1e9;
+            int i = 0;
+            while (i < bounds.length && seconds > bounds[i]) i++;
+            counts[i].increment();
+            sumNanos.add(nanos);
+        }
+
+        void render(StringBuilder sb, String name, String labels) {
+            String sep = labels.isEmpty() ? "" : ",";
+            long cumulative = 0;
+            for (int i = 0; i < bounds.length; i++) {
+                cumulative += counts[i].sum();
+                sb.append(name).append("_bucket{").append(labels).append(sep).append("le=\"").append(bounds[i]).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            cumulative += counts[bounds.length].sum();
+            sb.append(name).append("_bucket{").append(labels).append(sep).append("le=\"+Inf\"} ").append(cumulative).append('\n');
+            String braces = labels.isEmpty() ? "" : "{" + labels + "}";
+            sb.append(name).append("_sum").append(braces).append(' ').append(sumNanos.sum() / 1e9).append('\n');
+            sb.append(name).append("_count").append(braces).append(' ').append(cumulative).append('\n');
+        }
+    }
+
+    // Asana API へのリクエスト 1 回の結果（再試行は別々に数える）
+    static void recordResponse(int status, long nanos) {
+        REQUEST_SECONDS.observeNanos(nanos);
+        RESPONSES.computeIfAbsent(status, k -> new LongAdder()).increment();
+    }
+
+    // 接続失敗・タイムアウトなど、レスポンスを得られなかったリクエスト
+    static void recordRequestError(long nanos) {
+        REQUEST_SECONDS.observeNanos(nanos);
+        REQUEST_ERRORS.increment();
+    }
+
+    static void recordRetry(boolean throttled) {
+        RETRIES.increment();
+        if (throttled) THROTTLED.increment();
+    }
+
+    // 認証情報ごとのリクエストの結果（再試行は別々に数える）
+    static void recordCredentialRequest(String credential, String outcome) {
+        CREDENTIAL_REQUESTS.computeIfAbsent(credential + '\u0000' + outcome, k -> new LongAdder()).increment();
+    }
+
+    static void recordPage() {
+        PAGES.increment();
+    }
+
+    // runCheck 1 回分（対象の監視すべて）
+    static void recordRun(long nanos) {
+        RUN_SECONDS.observeNanos(nanos);
+    }
+
+    static void recordWatchCheck(Config.Watch w, long nanos, boolean ok) {
+        WATCH_CHECK_SECONDS.computeIfAbsent(watchKey(w), k -> new Histogram(CHECK_BUCKETS)).observeNanos(nanos);
+        if (!ok) CHECK_FAILURES.increment();
+    }
+
+    static void setWatchCount(Config.Watch w, int count, int threshold) {
+        WATCH_COUNTS.put(watchKey(w), new int[]{count, threshold});
+    }
+
+    // 内訳の区分（bucketThresholds）ごとの件数と閾値
+    static void setBucketCount(Config.Watch w, Config.BucketThreshold t, int count) {
+        String key = bucketKey(w, t);
+        WATCH_LABELS.put(key, watchLabels(w) + ",bucket=\"" + escape(t.label()) + "\"");
+        WATCH_COUNTS.put(key, new int[]{count, t.threshold});
+    }
+
+    static void setWatchStale(Config.Watch w, boolean stale) {
+        String key = watchKey(w);
+        if (stale) STALE_WATCHES.add(key); else STALE_WATCHES.remove(key);
+    }
+
+    // 設定にある監視・区分の系列だけを残す（config.json の再読込時）
+    static void retainWatches(Config cfg) {
+        Set<String> keys = new HashSet<>();
+        Set<String> taskAgeKeys = new HashSet<>();
+        for (Config.Watch w : cfg.effectiveWatches()) {
+            keys.add(w.key());
+            if (w.usesTaskAge()) taskAgeKeys.add(w.key());
+            if (w.bucketThresholds == null) continue;
+            for (Config.BucketThreshold t : w.bucketThresholds) {
+                if (t != null) keys.add(bucketKey(w, t));
+            }
+        }
+        WATCH_CHECK_SECONDS.keySet().retainAll(keys);
+        WATCH_COUNTS.keySet().retainAll(keys);
+        STALE_WATCHES.retainAll(keys);
+        OLDEST_TASK_AGES.keySet().retainAll(taskAgeKeys);
+        WATCH_LABELS.keySet().retainAll(keys);
+    }
+
+    // 系列のキーを返し、ラベル（表示名の変更を含む）を更新する
+    private static String watchKey(Config.Watch w) {
+        String key = w.key();
+        WATCH_LABELS.put(key, watchLabels(w));
+        return key;
+    }
+
+    private static String bucketKey(Config.Watch w, Config.BucketThreshold t) {
+        return w.key() + '\u0000' + t.key();
+    }
+
+    private static String watchLabels(Config.Watch w) {
+        return "project=\"" + escape(String.valueOf(w.projectGid)) + "\",section=\"" + escape(String.valueOf(w.targetSectionName))
+                + "\",watch=\"" + escape(w.label() == null ? "" : w.label()) + "\"";
+    }
+
+    private static String labels(String key) {
+        return WATCH_LABELS.getOrDefault(key, "watch=\"" + escape(key) + "\"");
+    }
+
+    static void setCircuitOpen(String credential, boolean open) {
+        CIRCUITS_OPEN.put(credential, open);
+    }
+
+    static void setOldestTaskAge(Config.Watch w, long seconds) {
+        OLDEST_TASK_AGES.put(watchKey(w), seconds);
+    }
+
+    static void setTimeToFirstCheck(long millis) {
+        timeToFirstCheckMillis = millis;
+    }
+
+    static void recordNotification(String backend, String outcome) {
+        NOTIFICATIONS.computeIfAbsent(backend + '\u0000' + outcome, k -> new LongAdder()).increment();
+    }
+
+    // 受信したレスポンス本文のバイト数を数える BodyHandler（圧縮されていれば圧縮後のサイズ）
+    static <T> HttpResponse.BodyHandler<T> countingBytes(HttpResponse.BodyHandler<T> handler) {
+        return info -> new CountingSubscriber<>(handler.apply(info));
+    }
+
+    private record CountingSubscriber<T>(HttpResponse.BodySubscriber<T> delegate) implements HttpResponse.BodySubscriber<T> {
+        @Override public CompletionStage<T> getBody() { return delegate.getBody(); }
+        @Override public void onSubscribe(Flow.Subscription subscription) { delegate.onSubscribe(subscription); }
+        @Override public void onError(Throwable throwable) { delegate.onError(throwable); }
+        @Override public void onComplete() { delegate.onComplete(); }
+
+        @Override
+        public void onNext(List<ByteBuffer> item) {
+            long n = 0;
+            for (ByteBuffer b : item) n += b.remaining();
+            BYTES.add(n);
+            delegate.onNext(item);
+        }
+    }
+
+    // Prometheus のテキスト形式（version 0.0.4）
+    public static String render() {
+        StringBuilder sb = new StringBuilder(4096);
+        help(sb, "asana_watcher_request_duration_seconds", "histogram", "Asana API request latency (until response headers)");
+        REQUEST_SECONDS.render(sb, "asana_watcher_request_duration_seconds", "");
+        help(sb, "asana_watcher_responses_total", "counter", "Asana API responses by HTTP status");
+        RESPONSES.forEach((status, n) ->
+                sb.append("asana_watcher_responses_total{status=\"").append(status).append("\"} ").append(n.sum()).append('\n'));
+        help(sb, "asana_watcher_credential_requests_total", "counter", "Asana API requests by credential and outcome");
+        CREDENTIAL_REQUESTS.forEach((key, n) -> {
+            int sep = key.indexOf('\u0000');
+            sb.append("asana_watcher_credential_requests_total{credential=\"").append(escape(key.substring(0, sep)))
+                    .append("\",outcome=\"").append(key.substring(sep + 1)).append("\"} ").append(n.sum()).append('\n');
+        });
+        counter(sb, "asana_watcher_request_errors_total", "Asana API requests that got no response", REQUEST_ERRORS);
+        counter(sb, "asana_watcher_retries_total", "Asana API requests retried after 429/5xx", RETRIES);
+        counter(sb, "asana_watcher_throttled_total", "Asana API 429 responses", THROTTLED);
+        counter(sb, "asana_watcher_pages_total", "Task list pages fetched", PAGES);
+        counter(sb, "asana_watcher_response_bytes_total", "Response body bytes received", BYTES);
+        help(sb, "asana_watcher_run_duration_seconds", "histogram", "Duration of one check run over all due watches");
+        RUN_SECONDS.render(sb, "asana_watcher_run_duration_seconds", "");
+        help(sb, "asana_watcher_check_duration_seconds", "histogram", "Duration of one watch check");
+        WATCH_CHECK_SECONDS.forEach((key, h) -> h.render(sb, "asana_watcher_check_duration_seconds", labels(key)));
+        counter(sb, "asana_watcher_check_failures_total", "Watch checks that failed", CHECK_FAILURES);
+        help(sb, "asana_watcher_notifications_total", "counter", "Notifications by backend and outcome");
+        NOTIFICATIONS.forEach((key, n) -> {
+            int sep = key.indexOf('\u0000');
+            sb.append("asana_watcher_notifications_total{backend=\"").append(escape(key.substring(0, sep)))
+                    .append("\",outcome=\"").append(key.substring(sep + 1)).append("\"} ").append(n.sum()).append('\n');
+        });
+        help(sb, "asana_watcher_incomplete_tasks", "gauge", "Incomplete tasks in the watched section at the last check");
+        WATCH_COUNTS.forEach((key, v) ->
+                sb.append("asana_watcher_incomplete_tasks{").append(labels(key)).append("} ").append(v[0]).append('\n'));
+        help(sb, "asana_watcher_threshold", "gauge", "Notification threshold of the watch");
+        WATCH_COUNTS.forEach((key, v) ->
+                sb.append("asana_watcher_threshold{").append(labels(key)).append("} ").append(v[1]).append('\n'));
+        help(sb, "asana_watcher_count_stale", "gauge", "1 if the last check failed and the incomplete task count is the last known value");
+        WATCH_COUNTS.forEach((key, v) ->
+                sb.append("asana_watcher_count_stale{").append(labels(key)).append("} ").append(STALE_WATCHES.contains(key) ? 1 : 0).append('\n'));
+        if (!CIRCUITS_OPEN.isEmpty()) {
+            help(sb, "asana_watcher_circuit_open", "gauge", "1 while requests with the credential are stopped after repeated connection failures");
+            CIRCUITS_OPEN.forEach((credential, open) ->
+                    sb.append("asana_watcher_circuit_open{credential=\"").append(escape(credential)).append("\"} ").append(open ? 1 : 0).append('\n'));
+        }
+        if (!OLDEST_TASK_AGES.isEmpty()) {
+            help(sb, "asana_watcher_oldest_task_age_seconds", "gauge", "Age of the oldest incomplete task in the watched section");
+            OLDEST_TASK_AGES.forEach((key, v) ->
+                    sb.append("asana_watcher_oldest_task_age_seconds{").append(labels(key)).append("} ").append(v).append('\n'));
+        }
+        long ttfc = timeToFirstCheckMillis;
+        if (ttfc >= 0) {
+            help(sb, "asana_watcher_time_to_first_check_seconds", "gauge", "Time from process start to the end of the first check");
+            sb.append("asana_watcher_time_to_first_check_seconds ").append(ttfc / 1000.0).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static void help(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void counter(StringBuilder sb, String name, String help, LongAdder value) {
+        help(sb, name, "counter", help);
+        sb.append(name).append(' ').append(value.sum()).append('\n');
+    }
+
+    private static String escape(String v) {
+        return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.asanawatcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+
+// メトリクスの公開サーバ。GET /metrics で Metrics.render() を Prometheus のテキスト形式で返す
+public class MetricsServer {
+    public static final String PATH = "/metrics";
+
+    private final HttpServer server;
+
+    public MetricsServer(String bindAddress, int port) throws IOException {
+        String host = bindAddress == null || bindAddress.isBlank() ? "127.0.0.1" : bindAddress.trim();
+        this.server = HttpServer.create(new InetSocketAddress(host, port), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public void start() {
+        server.start();
+        System.out.println(Instant.now() + " メトリクスサーバを起動: " + server.getAddress() + PATH);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"GET".equals(ex.getRequestMethod()) && !"HEAD".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = Metrics.render().getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            if ("HEAD".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, body.length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.ProxySelector;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// オフライン検知の疎通確認。設定の認証情報が使う API のホストへ TCP で接続できるかを見る
+// （ネットワークインターフェースの状態は、Windows では仮想アダプタが常に起動しているため当てにならない）。
+// - HttpClient と同じく既定の ProxySelector に従い、プロキシを通す場合はプロキシへ接続する
+// - TLS・HTTP は使わない（接続を確立したらすぐに閉じる）。判定できない場合は接続中とみなし、遮断器に任せる
+final class NetworkProbe {
+    static final int CONNECT_TIMEOUT_MILLIS = 3_000;
+
+    private NetworkProbe() {}
+
+    // PAT のある認証情報が使う API ホストのどれかへ接続できるか（ブロックする。チェック用スレッドでは呼ばない）
+    static boolean isApiReachable(Config cfg) {
+        Set<String> bases = new LinkedHashSet<>();
+        for (Config.Watch w : cfg.effectiveWatches()) {
+            Config.Credential c = cfg.credentialFor(w);
+            if (c != null && c.hasToken()) bases.add(AsanaClient.normalizeApiBase(c.apiBaseUrl));
+        }
+        if (bases.isEmpty()) return true;
+        for (String base : bases) {
+            SocketAddress target;
+            try {
+                target = connectAddress(URI.create(base));
+            } catch (IllegalArgumentException e) {
+                return true;
+            }
+            if (target == null) return true;
+            try (Socket s = new Socket()) {
+                s.connect(target, CONNECT_TIMEOUT_MILLIS);
+                return true;
+            } catch (IOException ignored) {
+                // 次のホストを試す
+            }
+        }
+        return false;
+    }
+
+    // 接続先（プロキシを通す場合はプロキシ）。ホストが無い URL は null
+    private static SocketAddress connectAddress(URI uri) {
+        if (uri.getHost() == null) return null;
+        ProxySelector selector = ProxySelector.getDefault();
+        if (selector != null) {
+            List<Proxy> proxies = selector.select(uri);
+            if (proxies != null && !proxies.isEmpty() && proxies.get(0).type() != Proxy.Type.DIRECT) {
+                return proxies.get(0).address();
+            }
+        }
+        int port = uri.getPort() != -1 ? uri.getPort() : "http".equalsIgnoreCase(uri.getScheme()) ? 80 : 443;
+        return new InetSocketAddress(uri.getHost(), port);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+
+// 通知の表示先（バックエンド）。必要なリソースの探索はコンストラクタで 1 回だけ行う
+public interface NotificationBackend {
+    // 設定（Config.notificationBackends）で指定する名前
+    String name();
+
+    // この環境で使えるか（リソースが見つからない場合などは false。次のバックエンドへフォールバック）
+    boolean isAvailable();
+
+    // 通知を表示する。表示できなかった場合は例外を投げ、呼び出し側が次のバックエンドを試す。
+    // 表示した後で失敗した場合は NotificationShownException を投げる（次のバックエンドは試さない）
+    void show(String title, String message) throws IOException, InterruptedException;
+}
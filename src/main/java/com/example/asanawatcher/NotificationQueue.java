@@ -0,0 +1,94 @@
+package com.example.asanawatcher;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+// 通知をチェック処理から切り離すためのキュー。
+// - チェック側は submit で積むだけで、SnoreToast の起動・終了待ちはしない
+// - 専用のワーカースレッドが 1 件ずつ取り出して表示（各表示は Notifier 側でタイムアウト）
+// - 同じチェックで複数の監視が閾値を超えた場合や、表示待ちの間に溜まった分は 1 回のまとめ通知にする
+// - キューは有界で、溢れた通知は捨ててログに残す
+public class NotificationQueue {
+    private static final int CAPACITY = 64;
+
+    // 閾値超過 1 件分（unit は件数なら「件」、滞留時間なら「時間」）
+    public record Alert(String label, int count, int threshold, String unit) {
+        public Alert(String label, int count, int threshold) {
+            this(label, count, threshold, "件");
+        }
+    }
+
+    // 1 回のチェック分の通知（test=true はメニューからのテスト通知）
+    private record Batch(List<Alert> alerts, boolean test) {}
+
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final Supplier<Notifier> notifierFactory;
+
+    public NotificationQueue(Supplier<Notifier> notifierFactory) {
+        this.notifierFactory = notifierFactory;
+        Thread t = new Thread(this::workLoop, "notifier");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // 1 回のチェックで閾値を超えた監視の通知を積む（空なら何もしない）
+    public void submit(List<Alert> alerts) {
+        if (alerts.isEmpty()) return;
+        offer(new Batch(List.copyOf(alerts), false));
+    }
+
+    // テスト通知を積む
+    public void submitTest() {
+        offer(new Batch(List.of(), true));
+    }
+
+    private void offer(Batch batch) {
+        if (!queue.offer(batch)) {
+            Metrics.recordNotification("queue", "dropped");
+            System.err.println(Instant.now() + " 通知キューが一杯のため破棄: " + batch.alerts());
+        }
+    }
+
+    private void workLoop() {
+        List<Batch> drained = new ArrayList<>();
+        while (true) {
+            try {
+                drained.add(queue.take());
+                queue.drainTo(drained);
+                deliver(drained);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("通知に失敗: " + e.getMessage());
+            } finally {
+                drained.clear();
+            }
+        }
+    }
+
+    private void deliver(List<Batch> batches) throws Exception {
+        Notifier notifier = notifierFactory.get();
+        List<Alert> alerts = new ArrayList<>();
+        for (Batch b : batches) {
+            if (b.test()) {
+                notifier.notifyTest();
+            } else {
+                alerts.addAll(b.alerts());
+            }
+        }
+        if (alerts.size() == 1) {
+            Alert a = alerts.get(0);
+            notifier.notifyThreshold(a.count(), a.label(), a.threshold(), a.unit());
+        } else if (alerts.size() > 1) {
+            List<String> lines = new ArrayList<>(alerts.size());
+            for (Alert a : alerts) {
+                lines.add(a.label() + ": " + a.count() + " " + a.unit() + "（閾値 " + a.threshold() + "）");
+            }
+            notifier.notifyDigest(lines);
+        }
+    }
+}
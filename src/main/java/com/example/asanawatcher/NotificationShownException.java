@@ -0,0 +1,11 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+
+// 通知は表示できたが、その後（終了待ち・後片付けなど）で失敗したことを表す例外。
+// Notifier は表示済みとして数え、次のバックエンドは試さない（同じ通知が二重に出るのを防ぐ）
+public class NotificationShownException extends IOException {
+    public NotificationShownException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Asana API へのリクエスト送信を制御するスケジューラ（PAT = 認証情報ごとに 1 つ）
+// - トークンバケットで毎分のリクエスト数を Asana のクォータ以下に抑える
+// - 同時実行数の上限
+// - 429 は Retry-After に従い、その間は同じ PAT の全リクエストを待たせる
+// - 5xx は指数バックオフ（ジッター付き）で再試行
+// - 429・認証エラー（401/403）・接続失敗の回数を認証情報の名前ごとに集計する
+// - 接続失敗が続いたら CircuitBreaker を開き、疎通を確認できるまでリクエストを送らない
+// 待機は仮想スレッドをピン留めしないよう ReentrantLock の外で行う
+public class RequestScheduler {
+    // 429/5xx の最大再試行回数
+    private static final int MAX_RETRIES = 4;
+    private static final long BACKOFF_BASE_MILLIS = 1_000L;
+    private static final long BACKOFF_MAX_MILLIS = 30_000L;
+    // Retry-After が無い 429 の待機時間
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 30L;
+
+    private final String name;
+    private final int requestsPerMinute;
+    private final int maxConcurrent;
+    private final double nanosPerToken;
+    private final Semaphore concurrency;
+    private final CircuitBreaker breaker;
+    private final ReentrantLock lock = new ReentrantLock();
+    // バケット残量（予約により負になり得る。負の分だけ後続が待つ）
+    private double tokens;
+    private long lastRefillNanos;
+    // 429 を受けた場合、この時刻まで新しいリクエストを送らない
+    private volatile long pausedUntilNanos;
+
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong authFailures = new AtomicLong();
+    private final AtomicLong requestErrors = new AtomicLong();
+
+    public RequestScheduler(int requestsPerMinute, int maxConcurrent) {
+        this(Config.DEFAULT_CREDENTIAL, requestsPerMinute, maxConcurrent);
+    }
+
+    // name: 認証情報の名前（ログ・メトリクスのラベル）
+    public RequestScheduler(String name, int requestsPerMinute, int maxConcurrent) {
+        this.name = name;
+        this.requestsPerMinute = Math.max(1, requestsPerMinute);
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / (double) this.requestsPerMinute;
+        this.concurrency = new Semaphore(this.maxConcurrent, true);
+        this.tokens = this.requestsPerMinute;
+        this.lastRefillNanos = System.nanoTime();
+        this.pausedUntilNanos = lastRefillNanos;
+        this.breaker = new CircuitBreaker(name);
+    }
+
+    // 設定値がこのスケジューラと同じか（設定変更時の作り直し判定に使用）
+    public boolean hasLimits(int requestsPerMinute, int maxConcurrent) {
+        return this.requestsPerMinute == Math.max(1, requestsPerMinute) && this.maxConcurrent == Math.max(1, maxConcurrent);
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public CircuitBreaker breaker() {
+        return breaker;
+    }
+
+    // 429 を受けた回数
+    public long throttledCount() {
+        return throttled.get();
+    }
+
+    // 429/5xx により再試行した回数
+    public long retriedCount() {
+        return retried.get();
+    }
+
+    // 401/403（PAT の失効・権限不足）を受けた回数
+    public long authFailureCount() {
+        return authFailures.get();
+    }
+
+    // 接続失敗・タイムアウトなど、レスポンスを得られなかった回数
+    public long requestErrorCount() {
+        return requestErrors.get();
+    }
+
+    // レート制限・同時実行数の範囲でリクエストを送信する。429/5xx は再試行し、最終的なレスポンスを返す
+    // 遮断器が開いている間は送らずに CircuitOpenException
+    public <T> HttpResponse<T> send(HttpClient client, HttpRequest req, HttpResponse.BodyHandler<T> handler) throws IOException, InterruptedException {
+        for (int attempt = 0; ; attempt++) {
+            breaker.check();
+            acquireToken();
+            HttpResponse<T> resp;
+            concurrency.acquire();
+            long start = System.nanoTime();
+            try {
+                resp = client.send(req, Metrics.countingBytes(handler));
+            } catch (IOException e) {
+                Metrics.recordRequestError(System.nanoTime() - start);
+                requestErrors.incrementAndGet();
+                Metrics.recordCredentialRequest(name, "error");
+                breaker.recordFailure();
+                throw e;
+            } finally {
+                concurrency.release();
+            }
+
+            int status = resp.statusCode();
+            Metrics.recordResponse(status, System.nanoTime() - start);
+            Metrics.recordCredentialRequest(name, outcome(status));
+            if (status == 401 || status == 403) authFailures.incrementAndGet();
+            boolean tooMany = status == 429;
+            if ((!tooMany && status / 100 != 5) || attempt >= MAX_RETRIES) {
+                if (status / 100 == 5) breaker.recordFailure(); else breaker.recordSuccess();
+                return resp;
+            }
+            discard(resp);
+            long waitMillis;
+            if (tooMany) {
+                throttled.incrementAndGet();
+                waitMillis = TimeUnit.SECONDS.toMillis(retryAfterSeconds(resp));
+                pauseUntil(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis));
+                System.out.println(Instant.now() + " [" + name + "] Asana API のレート制限（429）: " + waitMillis + "ms 待機して再試行します");
+            } else {
+                // フルジッター: 0〜min(上限, 基準×2^attempt) の一様乱数
+                long ceiling = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << attempt);
+                waitMillis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+                System.out.println(Instant.now() + " [" + name + "] Asana API エラー（" + status + "）: " + waitMillis + "ms 後に再試行します");
+            }
+            retried.incrementAndGet();
+            Metrics.recordRetry(tooMany);
+            Thread.sleep(waitMillis);
+        }
+    }
+
+    // バケットからトークンを 1 つ予約し、不足分（および 429 による停止期間）だけ待つ
+    private void acquireToken() throws InterruptedException {
+        long waitNanos;
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            tokens = Math.min(requestsPerMinute, tokens + (now - lastRefillNanos) / nanosPerToken);
+            lastRefillNanos = now;
+            tokens -= 1;
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+            waitNanos = Math.max(waitNanos, pausedUntilNanos - now);
+        } finally {
+            lock.unlock();
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private void pauseUntil(long untilNanos) {
+        lock.lock();
+        try {
+            if (untilNanos - pausedUntilNanos > 0) pausedUntilNanos = untilNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // メトリクスの outcome ラベル
+    private static String outcome(int status) {
+        if (status == 429) return "throttled";
+        if (status == 401 || status == 403) return "auth_failed";
+        if (status / 100 == 5) return "server_error";
+        return status / 100 == 2 ? "ok" : "client_error";
+    }
+
+    private static long retryAfterSeconds(HttpResponse<?> resp) {
+        return resp.headers().firstValue("Retry-After").map(v -> {
+            try {
+                return Math.max(1L, Long.parseLong(v.trim()));
+            } catch (NumberFormatException e) {
+                return DEFAULT_RETRY_AFTER_SECONDS;
+            }
+        }).orElse(DEFAULT_RETRY_AFTER_SECONDS);
+    }
+
+    // 再試行前に、ストリームで受け取った本文を閉じて接続を解放する
+    private static void discard(HttpResponse<?> resp) {
+        if (resp.body() instanceof AutoCloseable c) {
+            try { c.close(); } catch (Exception ignored) {}
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.asanawatcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// セクションの未完了タスクの内訳（担当者別・カスタムフィールドの選択肢別の件数）。
+// タスクは保持せず、ストリーミング解析中に GID（long）ごとの件数を LongIntHashMap へ加算するだけなので、
+// メモリは担当者・選択肢の種類数に比例し、セクションのタスク数には依存しない。
+// 名前（閾値の指定やログ表示用）は GID ごとに最初の 1 回だけ文字列にする
+public final class SectionBreakdown {
+    // BucketThreshold.field に指定する担当者の区分
+    public static final String ASSIGNEE = "assignee";
+    // 未割り当て・値なしの区分（GID 0）。BucketThreshold.value では "none"
+    public static final long NONE = 0L;
+    public static final String NONE_VALUE = "none";
+    // 内訳を取るカスタムフィールドの上限（タスクごとの「値あり」をビットで持つため）
+    static final int MAX_FIELDS = 64;
+
+    private final long[] fieldGids;
+    private final LongIntHashMap byAssignee = new LongIntHashMap(16);
+    private final LongIntHashMap[] byField;
+    // GID -> names のインデックス + 1（担当者・カスタムフィールド・選択肢の GID は Asana 全体で一意）
+    private final LongIntHashMap nameIds = new LongIntHashMap(32);
+    private final List<String> names = new ArrayList<>();
+    private int total;
+
+    // fieldGids: 内訳を取るカスタムフィールドの GID（数値でないものは無視）
+    public SectionBreakdown(List<String> fieldGids) {
+        long[] gids = new long[Math.min(fieldGids.size(), MAX_FIELDS)];
+        int n = 0;
+        for (String g : fieldGids) {
+            if (n == gids.length) break;
+            if (g != null && !g.isBlank() && g.chars().allMatch(Character::isDigit) && g.length() <= 18) {
+                gids[n++] = Long.parseLong(g);
+            }
+        }
+        this.fieldGids = Arrays.copyOf(gids, n);
+        this.byField = new LongIntHashMap[n];
+        for (int i = 0; i < n; i++) byField[i] = new LongIntHashMap(8);
+    }
+
+    // 内訳を取るカスタムフィールドなら、その番号（なければ -1）
+    int fieldIndex(long fieldGid) {
+        for (int i = 0; i < fieldGids.length; i++) {
+            if (fieldGids[i] == fieldGid) return i;
+        }
+        return -1;
+    }
+
+    // 名前をまだ記録していない GID か（解析側はこれが true のときだけ文字列を作る）
+    boolean needsName(long gid) {
+        return gid != NONE && !nameIds.containsKey(gid);
+    }
+
+    void putName(long gid, String name) {
+        if (!needsName(gid) || name == null) return;
+        names.add(name);
+        nameIds.add(gid, names.size());
+    }
+
+    // 未完了タスク 1 件を加算する。options[i] はカスタムフィールド fields[i] の選択肢（複数選択は同じ番号が並ぶ）。
+    // 内訳を取るフィールドのうち値の無かったものは NONE に数える
+    void addTask(long assignee, int[] fields, long[] options, int optionCount) {
+        total++;
+        byAssignee.add(assignee, 1);
+        long seen = 0L;
+        for (int i = 0; i < optionCount; i++) {
+            byField[fields[i]].add(options[i], 1);
+            seen |= 1L << fields[i];
+        }
+        for (int f = 0; f < byField.length; f++) {
+            if ((seen & (1L << f)) == 0) byField[f].add(NONE, 1);
+        }
+    }
+
+    // 未完了タスクの総数
+    public int total() {
+        return total;
+    }
+
+    // 区分の件数。field は "assignee" かカスタムフィールドの GID、value は GID・名前・"none"（同名は合算）
+    public int count(String field, String value) {
+        LongIntHashMap map = dimension(field);
+        if (map == null || value == null) return 0;
+        String v = value.trim();
+        if (NONE_VALUE.equalsIgnoreCase(v)) return map.get(NONE);
+        if (!v.isEmpty() && v.length() <= 18 && v.chars().allMatch(Character::isDigit)) {
+            long gid = Long.parseLong(v);
+            if (map.containsKey(gid)) return map.get(gid);
+        }
+        int[] sum = {0};
+        map.forEach((gid, c) -> {
+            if (v.equals(nameOf(gid))) sum[0] += c;
+        });
+        return sum[0];
+    }
+
+    // ログ用の要約（区分ごとに件数の多い順で limit 件まで）。例: 担当者 [山田=3, 未割り当て=1] / 優先度 [P1=4]
+    public String describe(int limit) {
+        StringBuilder sb = new StringBuilder("担当者 ");
+        appendTop(sb, byAssignee, limit, "未割り当て");
+        for (int i = 0; i < fieldGids.length; i++) {
+            String fieldName = nameOf(fieldGids[i]);
+            sb.append(" / ").append(fieldName != null ? fieldName : Long.toString(fieldGids[i])).append(' ');
+            appendTop(sb, byField[i], limit, "未設定");
+        }
+        return sb.toString();
+    }
+
+    private LongIntHashMap dimension(String field) {
+        if (field == null) return null;
+        String f = field.trim();
+        if (ASSIGNEE.equalsIgnoreCase(f)) return byAssignee;
+        if (f.isEmpty() || f.length() > 18 || !f.chars().allMatch(Character::isDigit)) return null;
+        int i = fieldIndex(Long.parseLong(f));
+        return i < 0 ? null : byField[i];
+    }
+
+    private String nameOf(long gid) {
+        int id = nameIds.get(gid);
+        return id == 0 ? null : names.get(id - 1);
+    }
+
+    private void appendTop(StringBuilder sb, LongIntHashMap map, int limit, String noneLabel) {
+        List<long[]> entries = new ArrayList<>(map.size());
+        map.forEach((gid, c) -> entries.add(new long[]{gid, c}));
+        entries.sort(Comparator.comparingLong((long[] e) -> -e[1]));
+        sb.append('[');
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            long gid = entries.get(i)[0];
+            String name = gid == NONE ? noneLabel : nameOf(gid);
+            if (i > 0) sb.append(", ");
+            sb.append(name != null ? name : Long.toString(gid)).append('=').append(entries.get(i)[1]);
+        }
+        if (entries.size() > limit) sb.append(", …");
+        sb.append(']');
+    }
+}
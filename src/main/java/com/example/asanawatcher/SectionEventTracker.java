@@ -0,0 +1,69 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Events API を使ったセクション未完了数の差分カウント。
+// - 未完了タスクの GID 集合と同期トークンを EventTaskIndex に保持（event-tasks.bin に保存。state.json には入れない）
+// - 2 回目以降はトークン以降のイベントだけを取得し、集合へ追加/削除を反映
+// - 初回やトークン期限切れ（412）、セクション GID の変化時のみ全件走査で集合を作り直す
+public final class SectionEventTracker {
+    private SectionEventTracker() {}
+
+    // 未完了数を返し、index の同期トークン/GID 集合を更新する
+    public static int count(AsanaClient client, String sectionGid, EventTaskIndex index) throws IOException, InterruptedException {
+        if (!index.isSyncedWith(sectionGid)) {
+            return resync(client, sectionGid, index, null);
+        }
+
+        String sync = index.syncToken();
+        // タスク GID -> 最後の action（同じタスクへの複数イベントは 1 回の確認にまとめる）
+        Map<String, String> touched = new LinkedHashMap<>();
+        boolean hasMore = true;
+        while (hasMore) {
+            AsanaClient.EventBatch batch = client.fetchEvents(sectionGid, sync);
+            if (batch.expired()) {
+                System.out.println(Instant.now() + " 同期トークンの期限切れのため全件を再取得します: section=" + sectionGid);
+                return resync(client, sectionGid, index, batch.sync());
+            }
+            for (AsanaClient.TaskEvent ev : batch.events()) {
+                touched.put(ev.taskGid(), ev.action());
+            }
+            sync = batch.sync();
+            hasMore = batch.hasMore();
+        }
+
+        for (Map.Entry<String, String> e : touched.entrySet()) {
+            String taskGid = e.getKey();
+            switch (e.getValue()) {
+                // セクションから外れた/削除されたタスクは問い合わせ不要
+                case "removed", "deleted" -> index.remove(taskGid);
+                // 追加・変更（完了/未完了の切り替えを含む）・復元は、現在の完了状態と所属を確認して反映
+                default -> {
+                    if (client.isTaskIncompleteInSection(taskGid, sectionGid)) {
+                        index.add(taskGid);
+                    } else {
+                        index.remove(taskGid);
+                    }
+                }
+            }
+        }
+        index.setSyncToken(sync);
+        return index.size();
+    }
+
+    // 全件走査で未完了集合を作り直す。トークンを先に取得しておき、走査中の変更は次回のイベントで拾う
+    // 走査が途中で失敗した場合はトークンを外し、次回も全件走査する
+    private static int resync(AsanaClient client, String sectionGid, EventTaskIndex index, String knownSync) throws IOException, InterruptedException {
+        String sync = knownSync;
+        if (sync == null) {
+            sync = client.fetchEvents(sectionGid, null).sync();
+        }
+        index.reset(sectionGid, null);
+        client.collectIncompleteTaskGids(sectionGid, index::add);
+        index.setSyncToken(sync);
+        return index.size();
+    }
+}
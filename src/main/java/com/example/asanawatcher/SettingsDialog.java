@@ -5,6 +5,7 @@ import java.awt.*;
 
 // 設定編集用のモーダルダイアログ。
 // Asana の PAT / プロジェクト / セクション / 閾値 / ポーリング / クールダウン / ボードURL を入力。
+// config.json に watches があるときは従来の単一設定の項目は使われないため、watches の 1 件目を編集する
 public class SettingsDialog extends JDialog {
     private final JTextField tfPat = new JTextField();
     private final JTextField tfProject = new JTextField();
@@ -39,6 +40,15 @@ public class SettingsDialog extends JDialog {
 
         add(new JScrollPane(form), BorderLayout.CENTER);
 
+        // 編集対象の監視（watches があればその 1 件目。なければ従来の単一設定）
+        Config.Watch target = cfg.watches != null && !cfg.watches.isEmpty() ? cfg.watches.get(0) : null;
+        if (target != null) {
+            JLabel notice = new JLabel("<html>config.json の watches（" + cfg.watches.size() + " 件）の 1 件目「"
+                    + escapeHtml(target.label()) + "」を編集します。<br>その他の監視・認証情報は config.json で編集してください。</html>");
+            notice.setBorder(BorderFactory.createEmptyBorder(8, 8, 0, 8));
+            add(notice, BorderLayout.NORTH);
+        }
+
         // ボタン行：キャンセル / 保存
         JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
         JButton btnSave = new JButton("保存");
@@ -49,11 +59,11 @@ public class SettingsDialog extends JDialog {
 
         // load
         tfPat.setText(cfg.personalAccessToken);
-        tfProject.setText(cfg.projectGid);
-        tfSection.setText(cfg.targetSectionName);
-        spThreshold.setValue(cfg.threshold);
-        spPolling.setValue(cfg.pollingMinutes);
-        spCooldown.setValue(cfg.cooldownMinutes);
+        tfProject.setText(target != null ? target.projectGid : cfg.projectGid);
+        tfSection.setText(target != null ? target.targetSectionName : cfg.targetSectionName);
+        spThreshold.setValue(target != null ? target.threshold : cfg.threshold);
+        spPolling.setValue(target != null ? target.pollingMinutes : cfg.pollingMinutes);
+        spCooldown.setValue(target != null ? target.cooldownMinutes : cfg.cooldownMinutes);
         tfBoardUrl.setText(cfg.boardUrl);
 
         // fit to initial screen width: set columns to shorten fields
@@ -75,11 +85,20 @@ public class SettingsDialog extends JDialog {
                 if (cool < 0) throw new IllegalArgumentException("クールダウンは0以上");
 
                 cfg.personalAccessToken = tfPat.getText().trim();
-                cfg.projectGid = tfProject.getText().trim();
-                cfg.targetSectionName = tfSection.getText().trim();
-                cfg.threshold = th;
-                cfg.pollingMinutes = pol;
-                cfg.cooldownMinutes = cool;
+                if (target != null) {
+                    target.projectGid = tfProject.getText().trim();
+                    target.targetSectionName = tfSection.getText().trim();
+                    target.threshold = th;
+                    target.pollingMinutes = pol;
+                    target.cooldownMinutes = cool;
+                } else {
+                    cfg.projectGid = tfProject.getText().trim();
+                    cfg.targetSectionName = tfSection.getText().trim();
+                    cfg.threshold = th;
+                    cfg.pollingMinutes = pol;
+                    cfg.cooldownMinutes = cool;
+                }
+                // 監視ごとの boardUrl が空の場合に使われる既定値
                 cfg.boardUrl = tfBoardUrl.getText().trim();
                 saved = true;
                 dispose();
@@ -88,7 +107,7 @@ public class SettingsDialog extends JDialog {
             }
         });
 
-        setPreferredSize(new Dimension(500, 380));
+        setPreferredSize(new Dimension(500, target != null ? 430 : 380));
         pack();
         setLocationRelativeTo(owner);
     }
@@ -102,4 +121,8 @@ public class SettingsDialog extends JDialog {
     }
 
     public boolean isSaved() { return saved; }
+
+    private static String escapeHtml(String s) {
+        return s == null ? "" : s.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
 }
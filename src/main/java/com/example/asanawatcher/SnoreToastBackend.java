@@ -0,0 +1,223 @@
+package com.example.asanawatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Windows のトースト通知（SnoreToast.exe を起動）。
+// exe・アイコンの探索と AUMID の登録はコンストラクタで 1 回だけ行い、通知ごとにはファイルシステムを見ない
+public class SnoreToastBackend implements NotificationBackend {
+    public static final String NAME = "snoretoast";
+    // SnoreToast の終了を待つ最大時間。SnoreToast はトーストが閉じられるか表示時間（-d short で約 7 秒）が過ぎるまで終了しないため、
+    // 表示時間より長くする。これを過ぎても終了しない場合は、起動できて表示中とみなす（NotificationShownException。プロセスも止めない）
+    static final long DELIVERY_TIMEOUT_SECONDS = 15L;
+    // 表示中とみなしたプロセスが終了しない場合に強制終了するまでの時間
+    private static final long ABANDON_SECONDS = 120L;
+    // SnoreToast の終了コード: 表示できなかった（それ以外は表示後の操作の結果: 0 クリック / 1 非表示 / 2 閉じた / 3 時間切れ など）
+    private static final int EXIT_FAILED = -1;
+
+    private static volatile boolean appIdInstallAttempted = false;
+
+    private final Path appBaseDir;
+    private final String snoreToastPath;
+    private final File exe;
+    private final File icon;
+
+    public SnoreToastBackend(Path appBaseDir, String snoreToastPath) {
+        this.appBaseDir = appBaseDir;
+        this.snoreToastPath = snoreToastPath;
+        this.exe = resolveSnoreToast();
+        this.icon = exe != null ? resolveIcon(exe) : null;
+        if (exe != null && !appIdInstallAttempted) {
+            // 通知バックエンドは設定の変更で作り直されるため、AUMID の登録はプロセスで 1 回だけ
+            appIdInstallAttempted = true;
+            installAppId(exe);
+        }
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return exe != null;
+    }
+
+    // SnoreToast を起動し、終了コードで表示できたかを判定する。出力は終了を待つ間に別スレッドで読み出す
+    @Override
+    public void show(String title, String message) throws IOException, InterruptedException {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(exe.getAbsolutePath());
+        cmd.add("-appID");
+        cmd.add("AsanaWatcher");
+        cmd.add("-t");
+        cmd.add(title);
+        cmd.add("-m");
+        cmd.add(message);
+        cmd.add("-d");
+        cmd.add("short");
+        if (icon != null) {
+            cmd.add("-p");
+            cmd.add(icon.getAbsolutePath());
+        }
+        // SnoreToast.exe をプロセスとして起動
+        ProcessBuilder pb = new ProcessBuilder(cmd);
+        pb.redirectErrorStream(true);
+        Process process = pb.start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        Thread drain = Thread.ofVirtual().name("snoretoast-output").start(() -> {
+            try (InputStream in = process.getInputStream()) {
+                in.transferTo(output);
+            } catch (IOException ignored) {
+                // プロセスの終了・強制終了で閉じられた
+            }
+        });
+        if (!process.waitFor(DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            // 表示中（ユーザーがトーストにカーソルを合わせている等）。終了は待たず、残り続ける場合だけ後で止める
+            process.onExit().orTimeout(ABANDON_SECONDS, TimeUnit.SECONDS).exceptionally(e -> {
+                process.destroyForcibly();
+                return process;
+            });
+            throw new NotificationShownException("SnoreToast が " + DELIVERY_TIMEOUT_SECONDS + " 秒以内に終了しません（表示中とみなし、終了を待ちません）");
+        }
+        drain.join(TimeUnit.SECONDS.toMillis(1));
+        int exit = process.exitValue();
+        String out = output.toString().trim();
+        System.out.println(Instant.now() + " SnoreToast exit=" + exit + " output=" + out);
+        if (exit == EXIT_FAILED) {
+            throw new IOException("SnoreToast が通知を表示できませんでした: " + out);
+        }
+    }
+
+    // If an icon file exists next to exe, prefer app.ico, then Asana.ico
+    private static File resolveIcon(File exe) {
+        File icon = new File(exe.getParentFile(), "app.ico");
+        if (icon.exists()) return icon;
+        File alt = new File(exe.getParentFile(), "Asana.ico");
+        return alt.exists() ? alt : null;
+    }
+
+    // SnoreToast.exe を以下の優先順位で探索：
+    // 1) 設定で明示されたパス（相対の場合はアプリルートも探索）
+    // 2) 実行中 JAR 近傍（jpackage 配置想定）
+    // 3) APPDATA/bin 配下
+    // 4) 開発用同梱パスから APPDATA/bin へコピーして使用
+    private File resolveSnoreToast() {
+        // 1) explicit path from config
+        if (snoreToastPath != null && !snoreToastPath.isBlank()) {
+            Path p = Path.of(snoreToastPath);
+            // if relative, try relative to app root and working dir
+            if (!p.isAbsolute()) {
+                File jarRoot = tryGetJarRoot();
+                if (jarRoot != null) {
+                    File f = new File(jarRoot, snoreToastPath);
+                    if (f.exists()) {
+                        System.out.println("Using SnoreToast at (relative to app): " + f);
+                        return f;
+                    }
+                }
+            }
+            if (p.toFile().exists()) {
+                System.out.println("Using SnoreToast at (explicit): " + p);
+                return p.toFile();
+            }
+        }
+
+        // 2) next to running JAR (jpackage places resources in app root)
+        File jarRoot = tryGetJarRoot();
+        if (jarRoot != null) {
+            File f1 = new File(jarRoot, "SnoreToast.exe");
+            if (f1.exists()) {
+                System.out.println("Using SnoreToast at (app root): " + f1);
+                return f1;
+            }
+        }
+
+        // 3) APPDATA bin fallback
+        if (appBaseDir != null) {
+            File bin = appBaseDir.resolve("bin").toFile();
+            File f2 = new File(bin, "SnoreToast.exe");
+            if (f2.exists()) {
+                System.out.println("Using SnoreToast at (APPDATA/bin): " + f2);
+                return f2;
+            }
+        }
+
+        // 4) dev-time path; if exists, copy to APPDATA/bin and use it
+        File dev = Path.of("packaging", "windows", "resources", "SnoreToast.exe").toFile();
+        if (dev.exists() && appBaseDir != null) {
+            try {
+                File bin = appBaseDir.resolve("bin").toFile();
+                if (!bin.exists()) bin.mkdirs();
+                File dst = new File(bin, "SnoreToast.exe");
+                if (!dst.exists()) Files.copy(dev.toPath(), dst.toPath());
+                // Also copy icon if present (prefer app.ico then Asana.ico)
+                File resDir = dev.getParentFile();
+                if (resDir != null) {
+                    File iconSrc = new File(resDir, "app.ico");
+                    if (!iconSrc.exists()) {
+                        File alt = Path.of("packaging", "windows", "Asana.ico").toFile();
+                        if (alt.exists()) iconSrc = alt; else iconSrc = null;
+                    }
+                    if (iconSrc != null && iconSrc.exists()) {
+                        File iconDst = new File(bin, iconSrc.getName());
+                        if (!iconDst.exists()) Files.copy(iconSrc.toPath(), iconDst.toPath());
+                    }
+                }
+                if (dst.exists()) {
+                    System.out.println("Copied SnoreToast from dev to APPDATA/bin: " + dst);
+                    return dst;
+                }
+            } catch (Exception ignored) {}
+        }
+
+        return null;
+    }
+
+    private static File tryGetJarRoot() {
+        try {
+            File jar = new File(SnoreToastBackend.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            // jar is .../app/asana-watcher-<ver>.jar; root is parent of parent
+            File appDir = jar.getParentFile();
+            if (appDir != null) {
+                File root = appDir.getParentFile();
+                if (root != null && root.exists()) return root;
+            }
+        } catch (Exception ignored) {}
+        return null;
+    }
+
+    // SnoreToast の -install で AUMID を登録（Windows の安定したトースト通知用）
+    private static void installAppId(File snore) {
+        try {
+            // Attempt to register AUMID via shortcut once using current executable
+            File jarRoot = tryGetJarRoot();
+            if (jarRoot == null) return;
+            File appExe = new File(jarRoot, "AsanaWatcher.exe");
+            if (!appExe.exists()) return;
+            List<String> cmd = new ArrayList<>();
+            cmd.add(snore.getAbsolutePath());
+            cmd.add("-install");
+            cmd.add("AsanaWatcher");
+            cmd.add(appExe.getAbsolutePath());
+            cmd.add("AsanaWatcher");
+            Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+            if (!p.waitFor(DELIVERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                p.destroyForcibly();
+                return;
+            }
+            String out = new String(p.getInputStream().readAllBytes());
+            System.out.println("SnoreToast -install exit=" + p.exitValue() + " output=" + out.trim());
+        } catch (Exception ignored) {
+        }
+    }
+}
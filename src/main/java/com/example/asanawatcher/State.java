@@ -1,16 +1,28 @@
 package com.example.asanawatcher;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 // 監視の内部状態を保持するクラス（JSON に保存）
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class State {
+    // 監視ごとの状態（キーは Config.Watch#key）
+    public Map<String, WatchState> watches = new LinkedHashMap<>();
+
+    // 以下は旧形式（単一監視）の状態。最初の監視の状態へ移行するためだけに読み込む
     // 直近の未完了タスク数
     public int lastCount = 0;
     // 直前が閾値未満だったか（true のとき、今回で閾値以上になれば上昇エッジとみなす）
@@ -20,12 +32,83 @@ public class State {
     // 前回使用した閾値（設定変更の検知に使用）
     public int lastThreshold = -1; // for detecting threshold changes
 
+    // 1 つの監視対象の状態
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class WatchState {
+        public int lastCount = 0;
+        public boolean wasBelowThreshold = true;
+        public long lastNotifiedAtEpochMillis = 0L;
+        public int lastThreshold = -1;
+        // 最後にチェックした時刻（エポックミリ秒）— 監視ごとのポーリング間隔の判定に使用
+        public long lastCheckedAtEpochMillis = 0L;
+        // 次回チェック予定時刻（エポックミリ秒）と、その決定に使った間隔（分）
+        public long nextCheckAtEpochMillis = 0L;
+        public int intervalMinutes = 0;
+        // プッシュモードで登録した Webhook の GID / 対象セクション GID / ハンドシェイクで受け取ったシークレット
+        public String webhookGid = null;
+        public String webhookSectionGid = null;
+        public String webhookSecret = null;
+        // 登録に使った認証情報の名前（削除に使う）と配信先 URL（webhookPublicUrl が変わったら登録し直す）
+        public String webhookCredential = null;
+        public String webhookTarget = null;
+        // countMode=events の同期トークンと未完了タスクの GID 集合は EventTaskIndex（event-tasks.bin）に持つ。
+        // 旧形式の state.json にある eventSyncToken / incompleteTaskGids は読み捨て、最初のチェックで全件走査して作り直す
+        // 内訳の区分ごとの閾値判定の状態（キーは Config.BucketThreshold#key）
+        public Map<String, BucketState> buckets = new LinkedHashMap<>();
+        // 最も古い未完了タスクの滞留時間（Config.Watch#maxTaskAgeHours）の閾値判定の状態（lastCount は時間）
+        public BucketState taskAge = new BucketState();
+        // 件数を取得できなくなった時刻（エポックミリ秒。0 なら直近のチェックで取得できている）。この間は lastCount を古い値として出す
+        public long staleSinceEpochMillis = 0L;
+    }
+
+    // 内訳の 1 区分・滞留時間の閾値判定の状態（WatchState の閾値判定に使う項目と同じ）
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class BucketState {
+        public int lastCount = 0;
+        public boolean wasBelowThreshold = true;
+        public long lastNotifiedAtEpochMillis = 0L;
+        public int lastThreshold = -1;
+    }
+
+    // 監視の状態を取得（なければ作成）。旧形式の状態しかない場合は最初の監視へ引き継ぐ
+    public WatchState watch(String key) {
+        WatchState ws = watches.get(key);
+        if (ws == null) {
+            ws = new WatchState();
+            if (watches.isEmpty() && lastThreshold != -1) {
+                ws.lastCount = lastCount;
+                ws.wasBelowThreshold = wasBelowThreshold;
+                ws.lastNotifiedAtEpochMillis = lastNotifiedAtEpochMillis;
+                ws.lastThreshold = lastThreshold;
+            }
+            watches.put(key, ws);
+        }
+        return ws;
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
     // 状態を読み込み。存在しない場合は初期状態で保存して返却
+    // 破損・書きかけのファイルは .corrupt に退避し、書き込み途中の一時ファイルが読めればそれを、なければ初期状態を使う
     public static State load(Path path) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
         if (Files.exists(path)) {
-            try (var in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-                return mapper.readValue(in, State.class);
+            try {
+                return MAPPER.readValue(Files.readAllBytes(path), State.class);
+            } catch (JsonProcessingException e) {
+                Path corrupt = path.resolveSibling(path.getFileName() + ".corrupt");
+                Files.move(path, corrupt, StandardCopyOption.REPLACE_EXISTING);
+                System.err.println(Instant.now() + " state.json が破損しているため退避しました: " + corrupt + " (" + e.getOriginalMessage() + ")");
+            }
+        }
+        Path tmp = tempPath(path);
+        if (Files.exists(tmp)) {
+            try {
+                State s = MAPPER.readValue(Files.readAllBytes(tmp), State.class);
+                save(s, path);
+                System.out.println(Instant.now() + " 書き込み途中の一時ファイルから状態を復元しました: " + tmp);
+                return s;
+            } catch (JsonProcessingException ignored) {
+                // 一時ファイルも不完全なら初期状態から
             }
         }
         State s = new State();
@@ -33,11 +116,34 @@ public class State {
         return s;
     }
 
-    // 状態を JSON として保存
+    // 状態を JSON として保存（一時ファイルへ書き込み → fsync → 置き換え）
     public static void save(State s, Path path) throws IOException {
+        writeAtomically(path, toBytes(s));
+    }
+
+    // 状態を JSON のバイト列にする（変更の有無の比較にも使う）
+    public static byte[] toBytes(State s) throws IOException {
+        return MAPPER.writeValueAsBytes(s);
+    }
+
+    // 同じディレクトリの一時ファイルへ書き込んで fsync し、ATOMIC_MOVE で置き換える。
+    // 途中で終了しても、state.json は置き換え前か置き換え後のどちらかの完全な内容になる
+    static void writeAtomically(Path path, byte[] bytes) throws IOException {
         Files.createDirectories(path.getParent());
-        ObjectMapper mapper = new ObjectMapper();
-        var json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(s);
-        Files.writeString(path, json, StandardCharsets.UTF_8);
+        Path tmp = tempPath(path);
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path tempPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".tmp");
     }
 }
@@ -0,0 +1,86 @@
+package com.example.asanawatcher;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// state.json への書き込みを間引く永続化層。
+// - 直前に書いた内容と同じなら書かない
+// - 短時間に続く更新は COALESCE_MILLIS 後の 1 回の書き込みにまとめる（最新の内容だけを書く）
+// - 書き込みは State.writeAtomically（一時ファイル → fsync → ATOMIC_MOVE）
+// - 終了時は flush() で未書き込みの内容を確実に書く
+public class StatePersister implements AutoCloseable {
+    private static final long COALESCE_MILLIS = 2_000L;
+
+    private final Path path;
+    private final ScheduledExecutorService writer;
+    // pending / lastWritten / writeScheduled を保護
+    private final Object lock = new Object();
+    // 書き込み処理そのものを直列化（バックグラウンドと flush が同時に一時ファイルへ書かないように）
+    private final Object writeLock = new Object();
+    private byte[] lastWritten;
+    private byte[] pending;
+    private boolean writeScheduled;
+
+    public StatePersister(Path path, State initial) throws IOException {
+        this.path = path;
+        this.lastWritten = State.toBytes(initial);
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "state-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // 状態の保存を依頼する（呼び出し側は状態を変更しないよう RUN_LOCK を保持していること）
+    public void save(State s) throws IOException {
+        byte[] bytes = State.toBytes(s);
+        synchronized (lock) {
+            if (Arrays.equals(bytes, pending != null ? pending : lastWritten)) return;
+            pending = bytes;
+            if (!writeScheduled) {
+                writeScheduled = true;
+                writer.schedule(this::writePending, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    // 未書き込みの内容があれば、呼び出したスレッドで直ちに書き込む
+    public void flush() {
+        writePending();
+    }
+
+    @Override
+    public void close() {
+        writer.shutdownNow();
+        flush();
+    }
+
+    private void writePending() {
+        synchronized (writeLock) {
+            byte[] bytes;
+            synchronized (lock) {
+                bytes = pending;
+                pending = null;
+                writeScheduled = false;
+                if (bytes == null || Arrays.equals(bytes, lastWritten)) return;
+            }
+            try {
+                State.writeAtomically(path, bytes);
+                synchronized (lock) {
+                    lastWritten = bytes;
+                }
+            } catch (IOException e) {
+                System.err.println(Instant.now() + " 状態の保存に失敗: " + e.getMessage());
+                // 次の保存依頼（または flush）で再試行する
+                synchronized (lock) {
+                    if (pending == null) pending = bytes;
+                }
+            }
+        }
+    }
+}
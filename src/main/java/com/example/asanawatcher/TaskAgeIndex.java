@@ -0,0 +1,175 @@
+package com.example.asanawatcher;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// セクションの未完了タスクを最初に見た時刻の索引（滞留時間の監視に使う）。
+// - タスク GID（long）-> 値（上位 32 ビット: 最初に見た時刻のエポック秒、下位 32 ビット: 最後に見た走査の世代）を
+//   LongLongHashMap に持つ。1 件 16 バイト・負荷率 1/2 以下なので 10 万件で 4 MB
+// - 走査ごとに見たタスクの世代だけを書き換え、走査の最後に今回見なかった（完了・移動した）タスクをその場で削除する
+// - 最も古いタスクは走査中に求める（最初に見た時刻・作成日時・最終更新日時のそれぞれ）
+// - すべての監視の索引を state.json と同じディレクトリの task-age.bin にバイナリで保存する
+public final class TaskAgeIndex {
+    private static final int MAGIC = 0x41575441; // "AWTA"
+    private static final int VERSION = 1;
+    private static final long LOW_32_BITS = 0xFFFF_FFFFL;
+
+    private final LongLongHashMap entries;
+    private int generation;
+    // 最後に走査を終えた時刻（エポック秒。0 なら未走査）
+    private long lastPollEpochSeconds;
+
+    // 走査中の状態と、直近の走査で求めた最も古いタスク（GID と時刻。該当なしは 0）
+    private long pollEpochSeconds;
+    private long oldestFirstSeenGid;
+    private long oldestFirstSeen;
+    private long oldestCreatedGid;
+    private long oldestCreated;
+    private long oldestModifiedGid;
+    private long oldestModified;
+
+    public TaskAgeIndex() {
+        this(64);
+    }
+
+    private TaskAgeIndex(int expectedSize) {
+        this.entries = new LongLongHashMap(expectedSize);
+    }
+
+    // 走査を始める（nowEpochSeconds を新しく見たタスクの時刻の上限に使う）
+    void beginPoll(long nowEpochSeconds) {
+        generation++;
+        pollEpochSeconds = nowEpochSeconds;
+        oldestFirstSeenGid = oldestCreatedGid = oldestModifiedGid = 0L;
+        oldestFirstSeen = oldestCreated = oldestModified = 0L;
+    }
+
+    // 未完了タスク 1 件を記録する。createdAt / modifiedAt はエポック秒（不明なら 0）
+    void seen(long taskGid, long createdAt, long modifiedAt) {
+        long v = entries.get(taskGid);
+        long firstSeen;
+        if (v != 0L) {
+            firstSeen = v >>> 32;
+        } else {
+            firstSeen = firstSeenOfNewTask(createdAt, modifiedAt);
+        }
+        entries.put(taskGid, (firstSeen << 32) | (generation & LOW_32_BITS));
+        if (oldestFirstSeenGid == 0L || firstSeen < oldestFirstSeen) {
+            oldestFirstSeenGid = taskGid;
+            oldestFirstSeen = firstSeen;
+        }
+        if (createdAt > 0 && (oldestCreatedGid == 0L || createdAt < oldestCreated)) {
+            oldestCreatedGid = taskGid;
+            oldestCreated = createdAt;
+        }
+        if (modifiedAt > 0 && (oldestModifiedGid == 0L || modifiedAt < oldestModified)) {
+            oldestModifiedGid = taskGid;
+            oldestModified = modifiedAt;
+        }
+    }
+
+    // 初めて見たタスクが列に入った時刻の推定。列の移動で modified_at が更新されるため、
+    // 前回の走査以降の modified_at ならそれを、索引を作った直後（前回の走査なし）なら modified_at（なければ created_at）を使う
+    private long firstSeenOfNewTask(long createdAt, long modifiedAt) {
+        long hint = modifiedAt > 0 ? modifiedAt : createdAt;
+        if (hint <= 0 || hint > pollEpochSeconds) return pollEpochSeconds;
+        if (lastPollEpochSeconds == 0L) return hint;
+        return Math.max(hint, lastPollEpochSeconds);
+    }
+
+    // 走査を終える。今回見なかったタスクを削除し、その件数を返す
+    int endPoll() {
+        long current = generation & LOW_32_BITS;
+        int removed = entries.removeIf((gid, v) -> (v & LOW_32_BITS) != current);
+        lastPollEpochSeconds = pollEpochSeconds;
+        return removed;
+    }
+
+    // 索引にあるタスク数（直近の走査での未完了数）
+    public int size() {
+        return entries.size();
+    }
+
+    // 最初に見た時刻が最も古いタスク（この列での滞留が最も長い）の GID と時刻
+    public long oldestFirstSeenGid() { return oldestFirstSeenGid; }
+    public long oldestFirstSeen() { return oldestFirstSeen; }
+    // 作成日時が最も古いタスク
+    public long oldestCreatedGid() { return oldestCreatedGid; }
+    public long oldestCreated() { return oldestCreated; }
+    // 最終更新日時が最も古いタスク
+    public long oldestModifiedGid() { return oldestModifiedGid; }
+    public long oldestModified() { return oldestModified; }
+
+    // task-age.bin を読み込む（キーは Config.Watch#key）。無い・壊れている場合は空から始める
+    public static Map<String, TaskAgeIndex> loadAll(Path path) {
+        Map<String, TaskAgeIndex> all = new LinkedHashMap<>();
+        try (InputStream raw = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(raw, 64 * 1024))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unknown format");
+            }
+            int watches = in.readInt();
+            for (int w = 0; w < watches; w++) {
+                int keyLength = in.readInt();
+                if (keyLength < 0 || keyLength > 64 * 1024) throw new IOException("bad key length: " + keyLength);
+                String key = new String(in.readNBytes(keyLength), StandardCharsets.UTF_8);
+                long lastPoll = in.readLong();
+                int generation = in.readInt();
+                int size = in.readInt();
+                if (size < 0) throw new IOException("bad size: " + size);
+                TaskAgeIndex idx = new TaskAgeIndex(size);
+                idx.lastPollEpochSeconds = lastPoll;
+                idx.generation = generation;
+                for (int i = 0; i < size; i++) {
+                    idx.entries.put(in.readLong(), in.readLong());
+                }
+                all.put(key, idx);
+            }
+        } catch (NoSuchFileException e) {
+            return all;
+        } catch (EOFException e) {
+            System.err.println(Instant.now() + " task-age.bin が途中で切れているため作り直します");
+            all.clear();
+        } catch (IOException e) {
+            System.err.println(Instant.now() + " task-age.bin を読めないため作り直します: " + e.getMessage());
+            all.clear();
+        }
+        return all;
+    }
+
+    // すべての索引を task-age.bin に保存する（State.writeAtomically: 一時ファイル → fsync → 置き換え）
+    public static void saveAll(Path path, Map<String, TaskAgeIndex> all) throws IOException {
+        State.writeAtomically(path, toBytes(all));
+    }
+
+    // ヘッダ: magic(int) version(int) 監視数(int)
+    // 監視ごと: キーの長さ(int) キー(UTF-8) 最終走査(long) 世代(int) 件数(int) + 件数 x (GID long, 値 long)
+    static byte[] toBytes(Map<String, TaskAgeIndex> all) {
+        long total = 12;
+        for (Map.Entry<String, TaskAgeIndex> e : all.entrySet()) {
+            total += 20 + e.getKey().getBytes(StandardCharsets.UTF_8).length + 16L * e.getValue().entries.size();
+        }
+        if (total > Integer.MAX_VALUE) throw new IllegalStateException("task-age index too large: " + total);
+        ByteBuffer buf = ByteBuffer.allocate((int) total);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(all.size());
+        for (Map.Entry<String, TaskAgeIndex> e : all.entrySet()) {
+            TaskAgeIndex idx = e.getValue();
+            byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+            buf.putInt(key.length).put(key);
+            buf.putLong(idx.lastPollEpochSeconds).putInt(idx.generation).putInt(idx.entries.size());
+            idx.entries.forEach((gid, v) -> buf.putLong(gid).putLong(v));
+        }
+        return buf.array();
+    }
+}
@@ -26,6 +26,15 @@ public class TrayApp {
 
     public Image getIconImage() { return iconImage; }
 
+    // Swing の画面操作を EDT 上で実行する（EDT 上ならその場で、それ以外からは EDT へ渡して待たない）
+    public static void runOnEdt(Runnable task) {
+        if (EventQueue.isDispatchThread()) {
+            task.run();
+        } else {
+            EventQueue.invokeLater(task);
+        }
+    }
+
     // システムトレイにアイコンとメニューを追加
     public void install() throws AWTException {
         if (!SystemTray.isSupported()) return;
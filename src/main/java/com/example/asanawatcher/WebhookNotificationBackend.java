@@ -0,0 +1,50 @@
+package com.example.asanawatcher;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+
+// 任意の URL へ {"title": ..., "message": ...} を POST する通知（Slack/Teams の中継やチャットボット向け）
+public class WebhookNotificationBackend implements NotificationBackend {
+    public static final String NAME = "webhook";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final URI url;
+    private final HttpClient client;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    public WebhookNotificationBackend(String url) {
+        this.url = url == null || url.isBlank() ? null : URI.create(url.trim());
+        this.client = this.url == null ? null : HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return url != null;
+    }
+
+    @Override
+    public void show(String title, String message) throws IOException, InterruptedException {
+        byte[] body = mapper.writeValueAsBytes(Map.of("title", title, "message", message));
+        HttpRequest req = HttpRequest.newBuilder(url)
+                .header("Content-Type", "application/json")
+                .timeout(TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        HttpResponse<String> resp = client.send(req, HttpResponse.BodyHandlers.ofString());
+        if (resp.statusCode() / 100 != 2) {
+            throw new IOException("通知 Webhook がエラーを返しました: " + resp.statusCode() + " - " + resp.body());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.asanawatcher;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Asana Webhook の受信サーバ（プッシュモード）。
+// - パス /asana-webhook/<sectionGid> でセクションごとの Webhook を受ける
+// - 登録時の X-Hook-Secret ハンドシェイクに応答し、シークレットを保持
+// - 配信ごとに X-Hook-Signature（本文の HMAC-SHA256）を検証し、タスクのイベントがあれば onSectionChanged を呼ぶ
+public class WebhookServer {
+    public static final String PATH_PREFIX = "/asana-webhook/";
+    // 配信本文の上限（Asana のイベント配信は小さい）
+    private static final int MAX_BODY_BYTES = 1_000_000;
+
+    private final HttpServer server;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final Consumer<String> onSectionChanged;
+    // sectionGid -> Webhook シークレット
+    private final Map<String, String> secrets = new ConcurrentHashMap<>();
+    // 登録中（ハンドシェイク待ち）のセクション。登録していないセクションのハンドシェイクは受け付けない
+    private final Set<String> pendingHandshakes = ConcurrentHashMap.newKeySet();
+
+    public WebhookServer(int port, Consumer<String> onSectionChanged) throws IOException {
+        this.onSectionChanged = onSectionChanged;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(PATH_PREFIX, this::handle);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    public void start() {
+        server.start();
+        System.out.println(Instant.now() + " Webhook 受信サーバを起動: port=" + port());
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    // セクションの Webhook 登録を開始する前に呼ぶ（ハンドシェイクを 1 回だけ受け付ける）
+    public void expectHandshake(String sectionGid) {
+        pendingHandshakes.add(sectionGid);
+    }
+
+    // 登録が終わった（失敗した場合も含む）後に呼ぶ。以後に届いたハンドシェイクは受け付けない
+    public void cancelHandshake(String sectionGid) {
+        pendingHandshakes.remove(sectionGid);
+    }
+
+    // ハンドシェイクで受け取った（または保存済みの）シークレット
+    public String secret(String sectionGid) {
+        return secrets.get(sectionGid);
+    }
+
+    // 保存済みのシークレットを登録する（再起動時）
+    public void putSecret(String sectionGid, String secret) {
+        secrets.put(sectionGid, secret);
+    }
+
+    private void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                ex.sendResponseHeaders(405, -1);
+                return;
+            }
+            String sectionGid = ex.getRequestURI().getPath().substring(PATH_PREFIX.length());
+
+            // ハンドシェイク: X-Hook-Secret をそのまま返す
+            String hookSecret = ex.getRequestHeaders().getFirst("X-Hook-Secret");
+            if (hookSecret != null) {
+                if (!pendingHandshakes.remove(sectionGid)) {
+                    ex.sendResponseHeaders(403, -1);
+                    return;
+                }
+                secrets.put(sectionGid, hookSecret);
+                ex.getResponseHeaders().add("X-Hook-Secret", hookSecret);
+                ex.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            byte[] body;
+            try (InputStream in = ex.getRequestBody()) {
+                body = in.readNBytes(MAX_BODY_BYTES + 1);
+            }
+            if (body.length > MAX_BODY_BYTES) {
+                ex.sendResponseHeaders(413, -1);
+                return;
+            }
+            String secret = secrets.get(sectionGid);
+            String signature = ex.getRequestHeaders().getFirst("X-Hook-Signature");
+            if (secret == null || signature == null || !verifySignature(body, secret, signature)) {
+                System.err.println(Instant.now() + " Webhook の署名が不正なため破棄: section=" + sectionGid);
+                ex.sendResponseHeaders(401, -1);
+                return;
+            }
+            ex.sendResponseHeaders(200, -1);
+
+            // ハートビート（events が空）は無視し、タスクのイベントがあればチェックを依頼
+            JsonNode root = mapper.readTree(body);
+            for (JsonNode ev : root.path("events")) {
+                if ("task".equals(ev.path("resource").path("resource_type").asText())) {
+                    onSectionChanged.accept(sectionGid);
+                    break;
+                }
+            }
+        } catch (Exception e) {
+            System.err.println(Instant.now() + " Webhook 処理に失敗: " + e.getMessage());
+        }
+    }
+
+    // X-Hook-Signature は本文をシークレットで HMAC-SHA256 した 16 進文字列（比較は定数時間）
+    static boolean verifySignature(byte[] body, String secret, String signatureHex) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] expected = mac.doFinal(body);
+            byte[] actual = HexFormat.of().parseHex(signatureHex.trim().toLowerCase());
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
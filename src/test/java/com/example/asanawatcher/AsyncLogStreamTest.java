@@ -0,0 +1,54 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// ログのローテーション（世代の保持）と、ローテーションに失敗したときの再試行の間隔
+class AsyncLogStreamTest {
+    private static final byte[] LINE = ("x".repeat(99) + "\n").getBytes(StandardCharsets.US_ASCII);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rotatesIntoGzipGenerations() throws IOException {
+        Path file = dir.resolve("app.log");
+        AsyncLogStream log = new AsyncLogStream(file, 1_000, 2, new PrintStream(new ByteArrayOutputStream()));
+        for (int i = 0; i < 50; i++) log.write(LINE, 0, LINE.length);
+        log.shutdown();
+
+        assertTrue(Files.exists(dir.resolve("app.log.1.gz")));
+        assertTrue(Files.exists(dir.resolve("app.log.2.gz")));
+        assertTrue(Files.notExists(dir.resolve("app.log.3.gz")));
+        assertTrue(Files.size(file) <= 1_000 + LINE.length);
+    }
+
+    @Test
+    void failedRotationIsRetriedOnlyAfterAnotherMaxBytes() throws IOException {
+        Path file = dir.resolve("app.log");
+        // 最古の世代の位置に空でないディレクトリがあると、削除できずにローテーションが失敗する
+        Path blocker = dir.resolve("app.log.1.gz");
+        Files.createDirectories(blocker);
+        Files.writeString(blocker.resolve("keep"), "x");
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        AsyncLogStream log = new AsyncLogStream(file, 1_000, 1, new PrintStream(errors, true, StandardCharsets.UTF_8));
+        // 100 バイト x 100 行 = 10,000 バイト。1 行ごとに再試行すると約 90 回、上限ごとなら約 9 回失敗する
+        for (int i = 0; i < 100; i++) log.write(LINE, 0, LINE.length);
+        log.shutdown();
+
+        long failures = errors.toString(StandardCharsets.UTF_8).lines().filter(l -> l.contains("ローテーションに失敗")).count();
+        assertTrue(failures >= 1 && failures <= 10, "rotation failures: " + failures);
+        // ローテーションできなくても追記は続く
+        assertEquals(100L * LINE.length, Files.size(file));
+    }
+}
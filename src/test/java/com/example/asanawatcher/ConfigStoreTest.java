@@ -0,0 +1,70 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// 公開した設定は保存元の Config と共有せず、リストは変更できない。使えない監視は除く
+class ConfigStoreTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void snapshotIsDetachedFromSavedConfig() throws IOException {
+        ConfigStore store = new ConfigStore(dir.resolve("config.json"));
+        Config edited = store.editableCopy();
+        Config.Watch w = new Config.Watch();
+        w.projectGid = "1200000000001";
+        w.targetSectionName = "Doing";
+        w.threshold = 5;
+        w.breakdownFields.add("assignee");
+        edited.watches.add(w);
+        store.save(edited);
+
+        // 保存した後に保存元を書き換えても、公開中の設定は変わらない
+        w.threshold = 99;
+        edited.watches.clear();
+        Config snapshot = store.snapshot();
+        assertEquals(1, snapshot.watches.size());
+        Config.Watch published = snapshot.watches.get(0);
+        assertEquals(5, published.threshold);
+
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.watches.add(new Config.Watch()));
+        assertThrows(UnsupportedOperationException.class, () -> published.breakdownFields.add("tag"));
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.notificationBackends.clear());
+
+        // 値を変えて使う処理は複製に対して行う
+        Config.Watch copy = published.copy();
+        assertNotSame(published, copy);
+        copy.countMode = Config.Watch.MODE_SCAN;
+        copy.breakdownFields.add("tag");
+        assertEquals(1, published.breakdownFields.size());
+    }
+
+    @Test
+    void nullAndBlankWatchesAreDropped() throws IOException {
+        Path path = dir.resolve("config.json");
+        Files.writeString(path, """
+                {"watches": [null,
+                  {"projectGid": "1200000000001", "targetSectionName": " "},
+                  {"projectGid": "", "targetSectionName": "Doing"},
+                  {"projectGid": "1200000000001", "targetSectionName": "Doing"}]}
+                """, StandardCharsets.UTF_8);
+
+        ConfigStore store = new ConfigStore(path);
+        assertEquals(1, store.snapshot().effectiveWatches().size());
+        assertEquals("1200000000001/Doing", store.snapshot().effectiveWatches().get(0).key());
+        // 直接読み込んだ設定（--once など）でも除かれる
+        assertEquals(1, Config.load(path).effectiveWatches().size());
+        // 未設定の従来形式は監視なし
+        assertEquals(0, new Config().effectiveWatches().size());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// event-tasks.bin の保存・読み込み（集合と同期トークンの往復、未同期の監視、壊れたファイル）
+class EventTaskIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTripsSetsAndSyncTokens() throws IOException {
+        Map<String, EventTaskIndex> all = new LinkedHashMap<>();
+        EventTaskIndex synced = new EventTaskIndex();
+        synced.reset("1200000000100", "sync-1");
+        for (int i = 0; i < 1_000; i++) synced.add(Long.toString(1_207_345_000_000_000L + i));
+        synced.remove("1207345000000007");
+        all.put("1/Doing", synced);
+        // 全件走査の途中で失敗した監視（トークンなし）
+        EventTaskIndex unsynced = new EventTaskIndex();
+        unsynced.reset("1200000000200", null);
+        all.put("1/レビュー待ち", unsynced);
+        Path path = dir.resolve("event-tasks.bin");
+        EventTaskIndex.saveAll(path, all);
+
+        Map<String, EventTaskIndex> loaded = EventTaskIndex.loadAll(path);
+        assertEquals(all.keySet(), loaded.keySet());
+        EventTaskIndex a = loaded.get("1/Doing");
+        assertEquals(999, a.size());
+        assertTrue(a.isSyncedWith("1200000000100"));
+        assertFalse(a.isSyncedWith("1200000000999"));
+        assertEquals("sync-1", a.syncToken());
+        assertTrue(a.contains("1207345000000999"));
+        assertFalse(a.contains("1207345000000007"));
+        assertFalse(loaded.get("1/レビュー待ち").isSyncedWith("1200000000200"));
+    }
+
+    @Test
+    void truncatedOrMissingFileStartsEmpty() throws IOException {
+        Path path = dir.resolve("event-tasks.bin");
+        assertTrue(EventTaskIndex.loadAll(path).isEmpty());
+
+        EventTaskIndex idx = new EventTaskIndex();
+        idx.reset("1200000000100", "sync-1");
+        idx.add("1207345000000001");
+        byte[] bytes = EventTaskIndex.toBytes(Map.of("1/Doing", idx));
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        assertTrue(EventTaskIndex.loadAll(path).isEmpty());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.asanawatcher;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+
+// Asana の Webhook 配信を模した送信側（ハンドシェイクと、本文を HMAC-SHA256 で署名したイベント配信）
+final class FakeWebhookSender implements AutoCloseable {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final String baseUrl;
+
+    FakeWebhookSender(int port) {
+        this.baseUrl = "http://127.0.0.1:" + port + WebhookServer.PATH_PREFIX;
+    }
+
+    // 登録時のハンドシェイク（X-Hook-Secret を送り、同じ値が返ることを期待する）
+    HttpResponse<Void> handshake(String sectionGid, String secret) throws IOException, InterruptedException {
+        return send(request(sectionGid).header("X-Hook-Secret", secret).POST(HttpRequest.BodyPublishers.noBody()));
+    }
+
+    // secret で署名した配信
+    HttpResponse<Void> deliver(String sectionGid, String secret, String body) throws IOException, InterruptedException {
+        return deliverWithSignature(sectionGid, sign(body.getBytes(StandardCharsets.UTF_8), secret), body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // 任意の署名（null なら X-Hook-Signature なし）で配信する
+    HttpResponse<Void> deliverWithSignature(String sectionGid, String signature, byte[] body) throws IOException, InterruptedException {
+        HttpRequest.Builder b = request(sectionGid).POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (signature != null) b.header("X-Hook-Signature", signature);
+        return send(b);
+    }
+
+    HttpResponse<Void> get(String sectionGid) throws IOException, InterruptedException {
+        return send(request(sectionGid).GET());
+    }
+
+    // 1 件のタスク変更イベント（Asana の配信と同じ形）
+    static String taskChanged(String taskGid) {
+        return "{\"events\":[{\"action\":\"changed\",\"resource\":{\"gid\":\"" + taskGid + "\",\"resource_type\":\"task\"}}]}";
+    }
+
+    static String sign(byte[] body, String secret) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            return HexFormat.of().formatHex(mac.doFinal(body));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String sectionGid) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + sectionGid));
+    }
+
+    private HttpResponse<Void> send(HttpRequest.Builder b) throws IOException, InterruptedException {
+        return client.send(b.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// history.bin のリングバッファ（容量を超えた上書き、開き直し）と集計（パーセンタイル、--history の出力）
+class HistoryStoreTest {
+    private static final long SECTION_A = 1_200_000_000_100L;
+    private static final long SECTION_B = 1_200_000_000_200L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void wrapsPastCapacityKeepingNewestInOrder() throws IOException {
+        try (HistoryStore store = HistoryStore.open(dir.resolve("history.bin"), 4)) {
+            for (int i = 0; i < 10; i++) store.append(1_000L + i, SECTION_A, i, 0);
+            assertEquals(4, store.size());
+            assertEquals(List.of(6, 7, 8, 9), counts(store, 0, 0, Long.MAX_VALUE));
+        }
+    }
+
+    @Test
+    void reopenKeepsRecordsAndRecreatesOnCapacityChange() throws IOException {
+        Path path = dir.resolve("history.bin");
+        try (HistoryStore store = HistoryStore.open(path, 4)) {
+            for (int i = 0; i < 6; i++) store.append(1_000L + i, SECTION_A, i, 0);
+        }
+        // 同じ容量で開き直すと続きから追記する
+        try (HistoryStore store = HistoryStore.open(path, 4)) {
+            assertEquals(List.of(2, 3, 4, 5), counts(store, 0, 0, Long.MAX_VALUE));
+            store.append(2_000L, SECTION_A, 6, 0);
+            assertEquals(List.of(3, 4, 5, 6), counts(store, 0, 0, Long.MAX_VALUE));
+        }
+        // 読み取り専用でも同じ内容が読める
+        try (HistoryStore store = HistoryStore.openReadOnly(path)) {
+            assertEquals(List.of(3, 4, 5, 6), counts(store, 0, 0, Long.MAX_VALUE));
+        }
+        // 容量が変わったら作り直す（空から）
+        try (HistoryStore store = HistoryStore.open(path, 8)) {
+            assertEquals(0, store.size());
+        }
+        assertThrows(IOException.class, () -> HistoryStore.openReadOnly(dir.resolve("missing.bin")));
+    }
+
+    @Test
+    void summarizesPercentilesPerSectionAndRange() throws IOException {
+        try (HistoryStore store = HistoryStore.open(dir.resolve("history.bin"), 1_000)) {
+            // A: 件数 1..100（逆順に追記）、取得時間 = 件数 x 10。B は範囲外の記録を含む
+            for (int i = 100; i >= 1; i--) store.append(10_000L + i, SECTION_A, i, i * 10);
+            store.append(5_000L, SECTION_B, 999, 1);
+            store.append(10_050L, SECTION_B, 7, 3);
+
+            HistoryStore.Summary a = store.summarize(SECTION_A, 10_000L, 20_000L);
+            assertEquals(new HistoryStore.Summary(100, 1, 100, 50, 95, 500, 950), a);
+            assertEquals(new HistoryStore.Summary(1, 7, 7, 7, 7, 3, 3), store.summarize(SECTION_B, 10_000L, 20_000L));
+            assertEquals(new HistoryStore.Summary(0, 0, 0, 0, 0, 0, 0), store.summarize(SECTION_A, 0L, 10_001L));
+
+            List<HistoryReport.Row> rows = HistoryReport.summarize(store, 0, 10_000L, 20_000L);
+            assertEquals(2, rows.size());
+            assertEquals(SECTION_A, rows.get(0).sectionGid());
+            assertEquals(a, rows.get(0).summary());
+            assertEquals(SECTION_B, rows.get(1).sectionGid());
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            HistoryReport.writeCsv(rows, new PrintStream(bytes, true, StandardCharsets.UTF_8));
+            assertEquals("""
+                    section,samples,min,max,p50,p95,latency_p50_ms,latency_p95_ms
+                    1200000000100,100,1,100,50,95,500,950
+                    1200000000200,1,7,7,7,7,3,3
+                    """, bytes.toString(StandardCharsets.UTF_8).replace(System.lineSeparator(), "\n"));
+        }
+    }
+
+    @Test
+    void reportSeparatesBadArgumentsFromIoFailures() throws IOException {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream errStream = new PrintStream(err, true, StandardCharsets.UTF_8);
+        PrintStream out = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+        Path missing = dir.resolve("history.bin");
+        // 引数の誤り（2）と読み込みの失敗（3）を区別する
+        assertEquals(BatchCheck.EXIT_FETCH_FAILED, HistoryReport.run(new String[]{"--history"}, missing, out, errStream));
+        assertEquals(BatchCheck.EXIT_USAGE, HistoryReport.run(new String[]{"--history", "--hours=x"}, missing, out, errStream));
+        assertEquals(BatchCheck.EXIT_USAGE, HistoryReport.run(new String[]{"--history", "--format=xml"}, missing, out, errStream));
+        // 形式の壊れたファイルも読み込みの失敗
+        Path broken = Files.writeString(dir.resolve("broken.bin"), "not a history file");
+        assertEquals(BatchCheck.EXIT_FETCH_FAILED, HistoryReport.run(new String[]{"--history"}, broken, out, errStream));
+    }
+
+    private static List<Integer> counts(HistoryStore store, long sectionGid, long from, long to) {
+        List<Integer> counts = new ArrayList<>();
+        store.forEach(sectionGid, from, to, (ts, gid, count, latency) -> counts.add(count));
+        return counts;
+    }
+}
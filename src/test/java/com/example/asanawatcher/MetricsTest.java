@@ -0,0 +1,43 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// 監視ごとの系列：別プロジェクトの同名セクションを区別し、設定から消えた監視の系列は捨てる
+class MetricsTest {
+    @Test
+    void sameSectionNameInTwoProjectsGetsSeparateSeriesAndRemovedWatchIsDropped() {
+        Config.Watch a = watch("1200000000001", "Doing", 5);
+        Config.Watch b = watch("1200000000002", "Doing", 8);
+        Metrics.setWatchCount(a, 3, a.threshold);
+        Metrics.setWatchCount(b, 11, b.threshold);
+        Metrics.setWatchStale(b, true);
+        Metrics.recordWatchCheck(b, 1_000_000L, false);
+
+        String before = Metrics.render();
+        assertTrue(before.contains("asana_watcher_incomplete_tasks{project=\"1200000000001\",section=\"Doing\",watch=\"Doing\"} 3"), before);
+        assertTrue(before.contains("asana_watcher_incomplete_tasks{project=\"1200000000002\",section=\"Doing\",watch=\"Doing\"} 11"), before);
+        assertTrue(before.contains("asana_watcher_count_stale{project=\"1200000000002\",section=\"Doing\",watch=\"Doing\"} 1"), before);
+
+        // b を設定から削除して再読込
+        Config cfg = new Config();
+        cfg.watches = List.of(a);
+        Metrics.retainWatches(cfg);
+
+        String after = Metrics.render();
+        assertTrue(after.contains("asana_watcher_incomplete_tasks{project=\"1200000000001\",section=\"Doing\",watch=\"Doing\"} 3"), after);
+        assertFalse(after.contains("project=\"1200000000002\""), after);
+    }
+
+    private static Config.Watch watch(String projectGid, String section, int threshold) {
+        Config.Watch w = new Config.Watch();
+        w.projectGid = projectGid;
+        w.targetSectionName = section;
+        w.threshold = threshold;
+        return w;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// オフライン検知の疎通確認：API のホストへ接続できるか。PAT が無く判定できない場合は接続中とみなす
+class NetworkProbeTest {
+    @Test
+    void reachableOnlyWhileApiHostAcceptsConnections() throws IOException {
+        int port;
+        Config cfg;
+        try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = server.getLocalPort();
+            cfg = config("http://127.0.0.1:" + port + "/api/1.0", "token");
+            assertTrue(NetworkProbe.isApiReachable(cfg));
+        }
+        // 閉じたポートへの接続は拒否される
+        assertFalse(NetworkProbe.isApiReachable(cfg));
+    }
+
+    @Test
+    void unknownWhenNoCredentialHasToken() {
+        assertTrue(NetworkProbe.isApiReachable(config("http://127.0.0.1:1/api/1.0", "")));
+    }
+
+    private static Config config(String apiBaseUrl, String token) {
+        Config cfg = new Config();
+        cfg.personalAccessToken = token;
+        cfg.apiBaseUrl = apiBaseUrl;
+        cfg.projectGid = "1200000000001";
+        cfg.targetSectionName = "Doing";
+        return cfg;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// バックエンドのフォールバック：表示できなかったときだけ次を試し、表示した後の失敗では試さない
+class NotifierTest {
+    // 呼ばれた順を記録し、指定した例外を投げる（null なら表示に成功）
+    private static final class FakeBackend implements NotificationBackend {
+        private final String name;
+        private final IOException failure;
+        private final List<String> calls;
+
+        FakeBackend(String name, IOException failure, List<String> calls) {
+            this.name = name;
+            this.failure = failure;
+            this.calls = calls;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public void show(String title, String message) throws IOException {
+            calls.add(name);
+            if (failure != null) throw failure;
+        }
+    }
+
+    @Test
+    void shownThenFailedDoesNotFallBack() throws Exception {
+        List<String> calls = new ArrayList<>();
+        // 表示した後に終了待ちが時間切れになったトースト
+        Notifier notifier = new Notifier(List.of(
+                new FakeBackend("toast", new NotificationShownException("timed out after showing"), calls),
+                new FakeBackend("awt", null, calls)));
+        notifier.notifyTest();
+
+        assertEquals(List.of("toast"), calls);
+        assertEquals(1, notifier.stats().get(0).delivered());
+        assertEquals(0, notifier.stats().get(0).failed());
+        assertEquals(0, notifier.stats().get(1).delivered());
+    }
+
+    @Test
+    void failureToDisplayFallsBackToNext() throws Exception {
+        List<String> calls = new ArrayList<>();
+        Notifier notifier = new Notifier(List.of(
+                new FakeBackend("toast", new IOException("could not launch"), calls),
+                new FakeBackend("awt", null, calls)));
+        notifier.notifyTest();
+
+        assertEquals(List.of("toast", "awt"), calls);
+        assertEquals(1, notifier.stats().get(0).failed());
+        assertEquals(1, notifier.stats().get(1).delivered());
+    }
+
+    @Test
+    void allBackendsFailingThrowsLastError() {
+        List<String> calls = new ArrayList<>();
+        Notifier notifier = new Notifier(List.of(
+                new FakeBackend("toast", new IOException("first"), calls),
+                new FakeBackend("webhook", new IOException("second"), calls)));
+        IOException e = assertThrows(IOException.class, notifier::notifyTest);
+
+        assertEquals("second", e.getMessage());
+        assertEquals(List.of("toast", "webhook"), calls);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.asanawatcher;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// タスク一覧 1 ページ（src/jmh/resources の実際の応答を元にした 100 件）の解析：
+// ストリーミング解析（AsanaClient.parseTaskPage）の結果がツリーモデルでの数え方と一致し、
+// 1 ページあたりの割り当てバイト数がツリーモデル（ObjectMapper.readTree）より大幅に少ないこと
+class PageParseAllocationTest {
+    private static final int WARMUP = 2_000;
+    private static final int MEASURED = 500;
+
+    private final JsonFactory factory = new JsonFactory();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void countsMatchTreeModel() throws IOException {
+        byte[] page = resource("section-tasks-page.json");
+        JsonNode root = mapper.readTree(page);
+        int expected = 0;
+        for (JsonNode task : root.path("data")) {
+            if (!task.path("completed").asBoolean(false)) expected++;
+        }
+        AsanaClient.TaskPage parsed = AsanaClient.parseTaskPage(factory.createParser(page), null);
+        assertEquals(expected, parsed.incomplete());
+        assertEquals(root.path("next_page").path("uri").asText(), parsed.nextUri());
+    }
+
+    @Test
+    void streamingAllocatesFarLessThanTreeModel() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assertTrue(threads.isThreadAllocatedMemorySupported(), "この JVM はスレッドごとの割り当て量を取得できません");
+        threads.setThreadAllocatedMemoryEnabled(true);
+        byte[] page = resource("section-tasks-page.json");
+
+        PageTask streaming = () -> AsanaClient.parseTaskPage(factory.createParser(page), null).incomplete();
+        PageTask tree = () -> mapper.readTree(page).path("data").size();
+        long streamingBytes = bytesPerPage(threads, streaming);
+        long treeBytes = bytesPerPage(threads, tree);
+        // 実測は 1/8 程度（約 6.8KB / 57KB）。JIT やバッファ再利用の差で揺れても失敗しないよう、1/3 を上限にする
+        assertTrue(streamingBytes * 3 < treeBytes, "streaming=" + streamingBytes + " tree=" + treeBytes);
+    }
+
+    @FunctionalInterface
+    private interface PageTask {
+        int run() throws IOException;
+    }
+
+    // 十分に JIT が効いた後の、1 ページあたりの割り当てバイト数
+    private static long bytesPerPage(com.sun.management.ThreadMXBean threads, PageTask task) throws IOException {
+        long sink = 0;
+        for (int i = 0; i < WARMUP; i++) sink += task.run();
+        long id = Thread.currentThread().threadId();
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int i = 0; i < MEASURED; i++) sink += task.run();
+        long after = threads.getThreadAllocatedBytes(id);
+        assertTrue(sink > 0);
+        return (after - before) / MEASURED;
+    }
+
+    private static byte[] resource(String name) throws IOException {
+        try (InputStream in = PageParseAllocationTest.class.getResourceAsStream("/" + name)) {
+            if (in == null) throw new IOException("resource not found: " + name);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.asanawatcher;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Events API による差分カウント：初回は全件走査、2 回目以降はイベントだけを反映し、
+// 集合と同期トークンは event-tasks.bin から読み直しても続きから数えられる
+class SectionEventTrackerTest {
+    private static final String SECTION = "1200000000100";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void appliesEventsAfterInitialScanAndAcrossReload() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", SectionEventTrackerTest::handle);
+        server.start();
+        String apiBase = "http://127.0.0.1:" + server.getAddress().getPort();
+        try (AsanaClient client = new AsanaClient("pat", new RequestScheduler(6000, 4), apiBase)) {
+            EventTaskIndex index = new EventTaskIndex();
+            // 初回: 412 で同期トークンを取得し、全件走査（未完了 3 件）
+            assertEquals(3, SectionEventTracker.count(client, SECTION, index));
+            assertEquals("s1", index.syncToken());
+
+            Path path = dir.resolve("event-tasks.bin");
+            EventTaskIndex.saveAll(path, Map.of("1/Doing", index));
+            EventTaskIndex reloaded = EventTaskIndex.loadAll(path).get("1/Doing");
+            // 2 回目: 1 件がセクションから外れ、1 件が追加された
+            assertEquals(3, SectionEventTracker.count(client, SECTION, reloaded));
+            assertEquals("s2", reloaded.syncToken());
+            assertTrue(reloaded.contains("9"));
+            assertFalse(reloaded.contains("1"));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void handle(HttpExchange ex) throws IOException {
+        try (ex) {
+            String path = ex.getRequestURI().getPath();
+            String query = ex.getRequestURI().getQuery();
+            if (path.equals("/sections/" + SECTION + "/tasks")) {
+                send(ex, 200, "{\"data\":[{\"gid\":\"1\",\"completed\":false},{\"gid\":\"2\",\"completed\":false},"
+                        + "{\"gid\":\"3\",\"completed\":true},{\"gid\":\"4\",\"completed\":false}],\"next_page\":null}");
+            } else if (path.equals("/events") && !query.contains("sync=")) {
+                send(ex, 412, "{\"sync\":\"s1\"}");
+            } else if (path.equals("/events") && query.contains("sync=s1")) {
+                send(ex, 200, "{\"data\":[{\"action\":\"removed\",\"resource\":{\"gid\":\"1\",\"resource_type\":\"task\"}},"
+                        + "{\"action\":\"added\",\"resource\":{\"gid\":\"9\",\"resource_type\":\"task\"}}],"
+                        + "\"sync\":\"s2\",\"has_more\":false}");
+            } else if (path.equals("/tasks/9")) {
+                send(ex, 200, "{\"data\":{\"completed\":false,\"memberships\":[{\"section\":{\"gid\":\"" + SECTION + "\"}}]}}");
+            } else {
+                send(ex, 404, "{}");
+            }
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json");
+        ex.sendResponseHeaders(status, bytes.length);
+        ex.getResponseBody().write(bytes);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.asanawatcher;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Webhook 受信サーバ：ハンドシェイク、署名の検証、本文の上限、登録していないセクションの拒否
+class WebhookServerTest {
+    private static final String SECTION = "1200000000100";
+    private static final String SECRET = "b537207f20cbfa02357cf448134da559e8bd39d61597dcd5631b8012eae53e81";
+
+    // 配信を受けたセクション（onSectionChanged はレスポンスを返した後に呼ばれるため、待ち合わせに使う）
+    private final BlockingQueue<String> changed = new LinkedBlockingQueue<>();
+
+    @Test
+    void handshakeIsAcceptedOnlyOnceAfterExpectHandshake() throws Exception {
+        WebhookServer server = start();
+        try (FakeWebhookSender sender = new FakeWebhookSender(server.port())) {
+            // 登録を始めていないセクションのハンドシェイクは拒否し、シークレットも保持しない
+            assertEquals(403, sender.handshake(SECTION, SECRET).statusCode());
+            assertNull(server.secret(SECTION));
+
+            server.expectHandshake(SECTION);
+            HttpResponse<Void> resp = sender.handshake(SECTION, SECRET);
+            assertEquals(200, resp.statusCode());
+            assertEquals(SECRET, resp.headers().firstValue("X-Hook-Secret").orElse(null));
+            assertEquals(SECRET, server.secret(SECTION));
+
+            // 2 回目（シークレットの差し替え）は受け付けない
+            assertEquals(403, sender.handshake(SECTION, "attacker").statusCode());
+            assertEquals(SECRET, server.secret(SECTION));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void cancelledHandshakeIsRejected() throws Exception {
+        WebhookServer server = start();
+        try (FakeWebhookSender sender = new FakeWebhookSender(server.port())) {
+            // 登録のリクエストが失敗した後に届いたハンドシェイクは受け付けない
+            server.expectHandshake(SECTION);
+            server.cancelHandshake(SECTION);
+            assertEquals(403, sender.handshake(SECTION, SECRET).statusCode());
+            assertNull(server.secret(SECTION));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void validSignatureTriggersCheckAndHeartbeatDoesNot() throws Exception {
+        WebhookServer server = start();
+        server.putSecret(SECTION, SECRET);
+        try (FakeWebhookSender sender = new FakeWebhookSender(server.port())) {
+            assertEquals(200, sender.deliver(SECTION, SECRET, "{\"events\":[]}").statusCode());
+            assertNull(changed.poll(200, TimeUnit.MILLISECONDS));
+
+            assertEquals(200, sender.deliver(SECTION, SECRET, FakeWebhookSender.taskChanged("1207345000000001")).statusCode());
+            assertEquals(SECTION, changed.poll(5, TimeUnit.SECONDS));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void badOrMissingSignatureIsRejected() throws Exception {
+        WebhookServer server = start();
+        server.putSecret(SECTION, SECRET);
+        byte[] body = FakeWebhookSender.taskChanged("1207345000000001").getBytes(StandardCharsets.UTF_8);
+        try (FakeWebhookSender sender = new FakeWebhookSender(server.port())) {
+            // 別のシークレットでの署名・署名なし・16 進でない署名・1 文字だけ違う署名
+            assertEquals(401, sender.deliverWithSignature(SECTION, FakeWebhookSender.sign(body, "other"), body).statusCode());
+            assertEquals(401, sender.deliverWithSignature(SECTION, null, body).statusCode());
+            assertEquals(401, sender.deliverWithSignature(SECTION, "not-hex", body).statusCode());
+            String valid = FakeWebhookSender.sign(body, SECRET);
+            String tampered = (valid.charAt(0) == '0' ? "1" : "0") + valid.substring(1);
+            assertEquals(401, sender.deliverWithSignature(SECTION, tampered, body).statusCode());
+            // シークレットの無い（ハンドシェイクしていない）セクションへの配信は、正しい形の署名でも拒否する
+            assertEquals(401, sender.deliverWithSignature("1200000000999", FakeWebhookSender.sign(body, SECRET), body).statusCode());
+            assertNull(changed.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void oversizedBodyIsRejectedBeforeVerification() throws Exception {
+        WebhookServer server = start();
+        server.putSecret(SECTION, SECRET);
+        try (FakeWebhookSender sender = new FakeWebhookSender(server.port())) {
+            byte[] body = new byte[1_000_001];
+            Arrays.fill(body, (byte) ' ');
+            assertEquals(413, sender.deliverWithSignature(SECTION, FakeWebhookSender.sign(body, SECRET), body).statusCode());
+            assertEquals(405, sender.get(SECTION).statusCode());
+            assertNull(changed.poll(200, TimeUnit.MILLISECONDS));
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void verifySignatureAcceptsUpperCaseHex() {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        assertTrue(WebhookServer.verifySignature(body, SECRET, FakeWebhookSender.sign(body, SECRET).toUpperCase()));
+        assertFalse(WebhookServer.verifySignature(body, SECRET, ""));
+    }
+
+    private WebhookServer start() throws Exception {
+        WebhookServer server = new WebhookServer(0, changed::add);
+        server.start();
+        return server;
+    }
+}